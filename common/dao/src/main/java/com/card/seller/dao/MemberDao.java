@@ -1,10 +1,11 @@
 package com.card.seller.dao;
 
+import com.card.seller.dao.hibernate.CacheInvalidationBus;
 import com.card.seller.dao.hibernate.HibernateSupportDao;
 import com.card.seller.domain.Member;
-import com.google.common.collect.Maps;
 
-import java.util.Map;
+import java.util.Collections;
+import java.util.concurrent.Callable;
 
 /**
  * Created by minjie
@@ -13,9 +14,55 @@ import java.util.Map;
  */
 public class MemberDao extends HibernateSupportDao<Member, Long> {
 
-    public Member getMemberByAccount(String account) {
-        Map<String, Object> map = Maps.newHashMap();
-        map.put("account", account);
-        return findUniqueByQuery("from " + Member.class.getName() + " where name=:account", map);
+    /**
+     * 新增会员事件,内容为新会员的登录名
+     */
+    public static final String MEMBER_INSERTED = "member_inserted";
+
+    /**
+     * 按登录名获取会员.登录名为会员的自然主键,先通过自然主键缓存获取主键,再从二级缓存获取会员.
+     * 并发的相同登录名查询只执行一次,共享查询出的主键
+     *
+     * @param account 登录名
+     * @return 会员,不存在时返回null
+     */
+    public Member getMemberByAccount(final String account) {
+        Long id = executeSingleFlight("getMemberByAccount", new Object[]{account}, new Callable<Long>() {
+            @Override
+            public Long call() {
+                Member member = getByNaturalId(account);
+                return member == null ? null : member.getId();
+            }
+        });
+        return id == null ? null : get(id);
+    }
+
+    /**
+     * 登录名是否已存在.只查询常量1,不会加载会员,并发的相同登录名查询只执行一次
+     *
+     * @param account 登录名
+     * @return boolean
+     */
+    public boolean existsAccount(final String account) {
+        return executeSingleFlight("existsAccount", new Object[]{account}, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return existsByProperty("name", account);
+            }
+        });
+    }
+
+    /**
+     * 新增会员,并通过{@link CacheInvalidationBus}发布{@link #MEMBER_INSERTED}事件,内容为登录名,
+     * 其他节点收到后可以把新登录名加入进程内的登录名过滤器.没有设置总线时与save相同
+     *
+     * @param member 会员
+     */
+    public void saveAndPublish(Member member) {
+        save(member);
+        CacheInvalidationBus bus = getCacheInvalidationBus();
+        if (bus != null) {
+            bus.publishEvent(getSession(), MEMBER_INSERTED, Collections.singletonList(member.getName()));
+        }
     }
 }
@@ -9,4 +9,9 @@ import com.card.seller.domain.User;
  * Time:下午9:25
  */
 public class UserDao extends HibernateSupportDao<User, Long> {
+
+    public UserDao() {
+        //后台用户读多写少,开启查询缓存
+        setCacheQueries(true);
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.type.Type;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 聚合查询描述,配合{@link HibernateSupportDao#aggregate(java.util.List, Aggregation)}使用.
+ * 聚合与分组都会转换为Criteria的Projection,在数据库中计算,每个聚合或分组都需要一个结果别名.
+ * <p/>
+ * 例如,按天统计注册会员数与余额合计:
+ * <pre>
+ * Aggregation aggregation = new Aggregation()
+ *         .groupBySql("date_trunc('day', {alias}.register_time)", "day", TimestampType.INSTANCE)
+ *         .count("id", "members")
+ *         .sum("balance", "totalBalance")
+ *         .asc("day");
+ * List&lt;Map&lt;String, Object&gt;&gt; rows = memberDao.aggregate(filters, aggregation);
+ * </pre>
+ * 结果类型与数据库一致:count为Long,avg为Double,sum/min/max与属性类型相同(整数属性的sum为Long)
+ *
+ * @author vincent
+ */
+public class Aggregation {
+
+    private final ProjectionList projections = Projections.projectionList();
+    private final Set<String> aliases = new LinkedHashSet<String>();
+    private final List<Order> orders = new ArrayList<Order>();
+
+    /**
+     * 按属性分组
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation groupBy(String propertyName, String alias) {
+        return add(Projections.groupProperty(propertyName), alias);
+    }
+
+    /**
+     * 按SQL表达式分组,表达式中可以使用{alias}表示实体对应的表,如date_trunc('day', {alias}.register_time)
+     *
+     * @param expression SQL表达式
+     * @param alias      结果别名
+     * @param type       结果类型
+     * @return Aggregation
+     */
+    public Aggregation groupBySql(String expression, String alias, Type type) {
+        Assert.hasText(expression, "分组表达式不能为空");
+        Assert.notNull(type, "结果类型不能为空");
+        addAlias(alias);
+        projections.add(Projections.sqlGroupProjection(expression + " as " + alias, expression, new String[]{alias}, new Type[]{type}));
+        return this;
+    }
+
+    /**
+     * 记录数
+     *
+     * @param alias 结果别名
+     * @return Aggregation
+     */
+    public Aggregation count(String alias) {
+        return add(Projections.rowCount(), alias);
+    }
+
+    /**
+     * 属性不为null的记录数
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation count(String propertyName, String alias) {
+        return add(Projections.count(propertyName), alias);
+    }
+
+    /**
+     * 属性去重后的个数
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation countDistinct(String propertyName, String alias) {
+        return add(Projections.countDistinct(propertyName), alias);
+    }
+
+    /**
+     * 合计
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation sum(String propertyName, String alias) {
+        return add(Projections.sum(propertyName), alias);
+    }
+
+    /**
+     * 平均值
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation avg(String propertyName, String alias) {
+        return add(Projections.avg(propertyName), alias);
+    }
+
+    /**
+     * 最小值
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation min(String propertyName, String alias) {
+        return add(Projections.min(propertyName), alias);
+    }
+
+    /**
+     * 最大值
+     *
+     * @param propertyName 属性名
+     * @param alias        结果别名
+     * @return Aggregation
+     */
+    public Aggregation max(String propertyName, String alias) {
+        return add(Projections.max(propertyName), alias);
+    }
+
+    /**
+     * 按结果别名升序排序
+     *
+     * @param alias 结果别名
+     * @return Aggregation
+     */
+    public Aggregation asc(String alias) {
+        orders.add(new PositionOrder(alias, getPosition(alias), true));
+        return this;
+    }
+
+    /**
+     * 按结果别名降序排序
+     *
+     * @param alias 结果别名
+     * @return Aggregation
+     */
+    public Aggregation desc(String alias) {
+        orders.add(new PositionOrder(alias, getPosition(alias), false));
+        return this;
+    }
+
+    /**
+     * 获取全部聚合与分组的Projection
+     *
+     * @return {@link ProjectionList}
+     */
+    public ProjectionList getProjections() {
+        Assert.isTrue(projections.getLength() > 0, "至少需要一个聚合或分组");
+        return projections;
+    }
+
+    /**
+     * 获取结果别名,顺序与结果列一致
+     *
+     * @return List
+     */
+    public List<String> getAliases() {
+        return Collections.unmodifiableList(new ArrayList<String>(aliases));
+    }
+
+    /**
+     * 获取排序
+     *
+     * @return List
+     */
+    public List<Order> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    private Aggregation add(Projection projection, String alias) {
+        addAlias(alias);
+        projections.add(projection, alias);
+        return this;
+    }
+
+    private int getPosition(String alias) {
+        int position = new ArrayList<String>(aliases).indexOf(alias);
+        Assert.isTrue(position >= 0, "没有结果别名:" + alias);
+        return position + 1;
+    }
+
+    private void addAlias(String alias) {
+        Assert.hasText(alias, "结果别名不能为空");
+        Assert.isTrue(aliases.add(alias), "结果别名重复:" + alias);
+    }
+
+    /**
+     * 按结果列序号排序.SQL分组表达式的别名无法被Criteria的Order解析,统一使用order by列序号
+     */
+    private static class PositionOrder extends Order {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int position;
+        private final boolean ascending;
+
+        private PositionOrder(String alias, int position, boolean ascending) {
+            super(alias, ascending);
+            this.position = position;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) {
+            return position + (ascending ? " asc" : " desc");
+        }
+    }
+}
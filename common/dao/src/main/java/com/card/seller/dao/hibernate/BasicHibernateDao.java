@@ -18,6 +18,11 @@ package com.card.seller.dao.hibernate;
 import com.card.seller.dao.hibernate.annotation.StateDelete;
 import com.card.seller.domain.ConvertUtils;
 import com.card.seller.domain.ReflectionUtils;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.*;
@@ -25,25 +30,35 @@ import org.hibernate.criterion.CriteriaSpecification;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
 import org.hibernate.engine.spi.NamedQueryDefinition;
 import org.hibernate.engine.spi.NamedSQLQueryDefinition;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.AbstractQueryImpl;
 import org.hibernate.internal.SessionFactoryImpl;
 import org.hibernate.jdbc.Work;
 import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.SecondLevelCacheStatistics;
 import org.hibernate.transform.Transformers;
-import org.hibernate.type.*;
+import org.hibernate.type.StringType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.math.BigDecimal;
-import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,6 +78,67 @@ public class BasicHibernateDao<T, PK extends Serializable> {
 
     protected final String DEFAULT_ALIAS = "X";
 
+    /**
+     * 默认批量写入大小,当sessionFactory没有配置hibernate.jdbc.batch_size时使用
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * 批量update/delete时,每条语句in子句中最多包含的id数量
+     */
+    public static final int IN_CLAUSE_SIZE = 500;
+
+    //EXPLAIN (FORMAT JSON)结果中最外层节点的估算行数
+    private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
+    /**
+     * 默认流式查询时每次从数据库获取的记录数
+     */
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /**
+     * 查询语句解析结果最多缓存的语句个数
+     */
+    public static final int QUERY_METADATA_CACHE_SIZE = 1000;
+
+    //按查询语句缓存的解析结果,避免每次分页都重新解析count语句
+    private final LoadingCache<String, QueryMetadata> queryMetadataCache = CacheBuilder.newBuilder()
+            .maximumSize(QUERY_METADATA_CACHE_SIZE)
+            .recordStats()
+            .build(new CacheLoader<String, QueryMetadata>() {
+                @Override
+                public QueryMetadata load(String queryOrNamedQuery) {
+                    return createQueryMetadata(queryOrNamedQuery);
+                }
+            });
+
+    //批量写入时每多少个对象flush并clear一次session,小于等于0时使用hibernate.jdbc.batch_size
+    private int batchSize;
+
+    //是否使用查询缓存
+    private boolean cacheQueries = false;
+
+    //跨节点缓存失效总线
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    //并发按主键获取对象的批量加载器
+    private BatchingEntityLoader<T, PK> batchingEntityLoader;
+
+    //合并本DAO并发的相同查询
+    private final SingleFlight<List<Object>, Object> singleFlight = new SingleFlight<List<Object>, Object>();
+
+    //查询缓存区域
+    private String queryCacheRegion;
+
+    //流式查询时JDBC每次获取的记录数
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    //按主键列表查询时每个in子句最多包含的id数量
+    private int inClauseSize = IN_CLAUSE_SIZE;
+
+    //按主键列表查询时并行执行各分片的线程池,为空时在当前Session中依次执行
+    private ExecutorService inQueryExecutor;
+
     private static Logger logger = LoggerFactory.getLogger(BasicHibernateDao.class);
 
     /**
@@ -100,13 +176,168 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         return sessionFactory;
     }
 
+    /**
+     * 设置批量写入大小,insertAll/updateAll/saveAll每处理batchSize个对象后flush并clear一次session.
+     * 建议与hibernate.jdbc.batch_size保持一致,让每次flush刚好是一个JDBC批次
+     *
+     * @param batchSize 批量写入大小,小于等于0时使用hibernate.jdbc.batch_size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 获取批量写入大小.没有设置时使用sessionFactory的hibernate.jdbc.batch_size,
+     * 都没有配置时返回{@link #DEFAULT_BATCH_SIZE}
+     *
+     * @return int
+     */
+    public int getBatchSize() {
+        if (batchSize > 0) {
+            return batchSize;
+        }
+        if (sessionFactory instanceof SessionFactoryImplementor) {
+            int jdbcBatchSize = ((SessionFactoryImplementor) sessionFactory).getSettings().getJdbcBatchSize();
+            if (jdbcBatchSize > 0) {
+                return jdbcBatchSize;
+            }
+        }
+        return DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * 是否使用查询缓存
+     *
+     * @return boolean
+     */
+    public boolean isCacheQueries() {
+        return cacheQueries;
+    }
+
+    /**
+     * 设置是否使用查询缓存.开启后本DAO通过{@link #createQuery(String, Object...)}和{@link #createCriteria(Criterion...)}
+     * 创建的查询都会使用查询缓存,需要hibernate.cache.use_query_cache=true.
+     * 查询缓存在对应表有任何写入后整体失效,只适合读多写少的实体
+     *
+     * @param cacheQueries 是否使用查询缓存
+     */
+    public void setCacheQueries(boolean cacheQueries) {
+        this.cacheQueries = cacheQueries;
+    }
+
+    /**
+     * 设置查询缓存的区域,为空时使用默认区域
+     *
+     * @param queryCacheRegion 查询缓存区域名称
+     */
+    public void setQueryCacheRegion(String queryCacheRegion) {
+        this.queryCacheRegion = queryCacheRegion;
+    }
+
+    /**
+     * 获取流式查询时JDBC每次从数据库获取的记录数
+     *
+     * @return int
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * 设置流式查询时JDBC每次从数据库获取的记录数.PostgreSQL只有在事务中(非autocommit)才会按fetchSize分批获取
+     *
+     * @param fetchSize JDBC fetch size
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 设置按主键列表查询时每个in子句最多包含的id数量
+     *
+     * @param inClauseSize 分片大小
+     */
+    public void setInClauseSize(int inClauseSize) {
+        Assert.isTrue(inClauseSize > 0, "分片大小必须大于0");
+        this.inClauseSize = inClauseSize;
+    }
+
+    /**
+     * 设置按主键列表查询时并行执行各分片的线程池.并行查询的每个分片使用独立的连接,
+     * 返回的对象为游离状态,只适用于只读场景
+     *
+     * @param inQueryExecutor 线程池
+     */
+    public void setInQueryExecutor(ExecutorService inQueryExecutor) {
+        this.inQueryExecutor = inQueryExecutor;
+    }
+
     /**
      * 取得当前Session.
      *
      * @return {@link org.hibernate.Session}
      */
     public Session getSession() {
-        return sessionFactory.getCurrentSession();
+        Session session = sessionFactory.getCurrentSession();
+
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !session.isDefaultReadOnly()) {
+            setReadOnlyTransaction(session);
+        }
+
+        return session;
+    }
+
+    /**
+     * 在只读事务(@Transactional(readOnly = true))中将Session设置为默认只读并关闭自动flush,
+     * 查询出的对象不保存快照也不参与脏检查,事务结束后恢复原设置
+     *
+     * @param session 当前Session
+     */
+    private void setReadOnlyTransaction(final Session session) {
+        final FlushMode flushMode = session.getFlushMode();
+
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    //OpenSessionInView时Session会被之后的读写事务继续使用
+                    if (session.isOpen()) {
+                        session.setDefaultReadOnly(false);
+                        session.setFlushMode(flushMode);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 以只读方式执行一组查询.回调中通过本Session查询出的对象均为只读,不保存快照也不参与flush时的脏检查,
+     * 适用于读写事务中只用于展示的大量查询.回调执行完后恢复Session原来的只读设置
+     * <p/>
+     * <pre>
+     * List&lt;Member&gt; members = memberDao.executeReadOnly(new SessionCallback&lt;List&lt;Member&gt;&gt;() {
+     *     public List&lt;Member&gt; doInSession(Session session) {
+     *         return memberDao.findByPropertyFilter(filters);
+     *     }
+     * });
+     * </pre>
+     *
+     * @param callback 查询回调
+     * @return 回调的返回值
+     */
+    public <X> X executeReadOnly(SessionCallback<X> callback) {
+        Session session = getSession();
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+
+        session.setDefaultReadOnly(true);
+        try {
+            return callback.doInSession(session);
+        } finally {
+            session.setDefaultReadOnly(defaultReadOnly);
+        }
     }
 
     /**
@@ -119,7 +350,9 @@ public class BasicHibernateDao<T, PK extends Serializable> {
     }
 
     /**
-     * 批量新增对象
+     * 批量新增对象.每{@link #getBatchSize()}个对象flush并clear一次session,
+     * 配合hibernate.jdbc.batch_size与hibernate.order_inserts使用JDBC批量执行insert语句.
+     * 注意:每次clear后session中已有的对象(包括list中已写入的对象)都会变为游离状态
      *
      * @param list orm实体集合
      */
@@ -129,8 +362,21 @@ public class BasicHibernateDao<T, PK extends Serializable> {
             return;
         }
 
-        for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
-            insert(it.next());
+        Session session = getSession();
+        int size = getBatchSize();
+        int count = 0;
+        //批量写入不放入二级缓存,更新和删除仍会使缓存失效
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try {
+            for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
+                session.save(it.next());
+                if (++count % size == 0) {
+                    flushAndClear(session);
+                }
+            }
+        } finally {
+            session.setCacheMode(cacheMode);
         }
 
     }
@@ -141,11 +387,15 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @param entity orm实体
      */
     public void update(T entity) {
-        getSession().update(entity);
+        Session session = getSession();
+        session.update(entity);
+        publishInvalidation(session, entity);
     }
 
     /**
-     * 批量更新对象
+     * 批量更新对象.每{@link #getBatchSize()}个对象flush并clear一次session,
+     * 配合hibernate.jdbc.batch_size与hibernate.order_updates使用JDBC批量执行update语句.
+     * 注意:每次clear后session中已有的对象(包括list中已写入的对象)都会变为游离状态
      *
      * @param list orm实体集合
      */
@@ -153,9 +403,28 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         if (CollectionUtils.isEmpty(list)) {
             return;
         }
-        for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
-            update(it.next());
+        Session session = getSession();
+        int size = getBatchSize();
+        int count = 0;
+        //批量写入不放入二级缓存,更新和删除仍会使缓存失效
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        List<Serializable> ids = new ArrayList<Serializable>();
+        try {
+            for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
+                T entity = it.next();
+                session.update(entity);
+                if (cacheInvalidationBus != null) {
+                    ids.add(getIdentifier(session, entity));
+                }
+                if (++count % size == 0) {
+                    flushAndClear(session);
+                }
+            }
+        } finally {
+            session.setCacheMode(cacheMode);
         }
+        publishInvalidation(ids);
     }
 
     /**
@@ -164,7 +433,9 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @param entity orm实体
      */
     public void saveOrUpdate(T entity) {
-        getSession().saveOrUpdate(entity);
+        Session session = getSession();
+        session.saveOrUpdate(entity);
+        publishInvalidation(session, entity);
     }
 
     /**
@@ -177,7 +448,8 @@ public class BasicHibernateDao<T, PK extends Serializable> {
     }
 
     /**
-     * 保存或更新全部对象
+     * 保存或更新全部对象.每{@link #getBatchSize()}个对象flush并clear一次session.
+     * 注意:每次clear后session中已有的对象(包括list中已写入的对象)都会变为游离状态
      *
      * @param list orm实体集合
      */
@@ -186,9 +458,38 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         if (CollectionUtils.isEmpty(list)) {
             return;
         }
-        for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
-            saveOrUpdate(it.next());
+        Session session = getSession();
+        int size = getBatchSize();
+        int count = 0;
+        //批量写入不放入二级缓存,更新和删除仍会使缓存失效
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        List<Serializable> ids = new ArrayList<Serializable>();
+        try {
+            for (Iterator<T> it = list.iterator(); it.hasNext(); ) {
+                T entity = it.next();
+                session.saveOrUpdate(entity);
+                if (cacheInvalidationBus != null) {
+                    ids.add(getIdentifier(session, entity));
+                }
+                if (++count % size == 0) {
+                    flushAndClear(session);
+                }
+            }
+        } finally {
+            session.setCacheMode(cacheMode);
         }
+        publishInvalidation(ids);
+    }
+
+    /**
+     * 批量写入时把当前批次的语句发送到数据库并清空session一级缓存,保证批量写入的内存占用不随数据量增长
+     *
+     * @param session 当前session
+     */
+    protected void flushAndClear(Session session) {
+        session.flush();
+        session.clear();
     }
 
     /**
@@ -209,7 +510,9 @@ public class BasicHibernateDao<T, PK extends Serializable> {
             ReflectionUtils.invokeSetterMethod(entity, stateDelete.propertyName(), value);
             update(entity);
         } else {
-            getSession().delete(entity);
+            Session session = getSession();
+            session.delete(entity);
+            publishInvalidation(session, entity);
         }
 
     }
@@ -224,18 +527,50 @@ public class BasicHibernateDao<T, PK extends Serializable> {
     }
 
     /**
-     * 按PK批量删除对象
+     * 按PK批量删除对象.如果orm实体配置了{@link StateDelete},执行:
+     * <pre>
+     * update Entity set state = ? where id in (?,?,?...)
+     * </pre>
+     * 否则执行:
+     * <pre>
+     * delete from Entity where id in (?,?,?...)
+     * </pre>
+     * 每条语句最多包含{@link #IN_CLAUSE_SIZE}个id,不会加载实体,也不会触发级联操作.
+     * 执行后当前session中对应的实体会被清除出session
      *
      * @param ids 主键ID集合
+     * @return 影响的记录数
      */
-    public void deleteAll(List<PK> ids) {
+    public int deleteAll(List<PK> ids) {
         if (CollectionUtils.isEmpty(ids)) {
-            return;
+            return 0;
         }
-        for (Iterator<PK> it = ids.iterator(); it.hasNext(); ) {
-            delete(it.next());
+
+        StateDelete stateDelete = ReflectionUtils.getAnnotation(entityClass, StateDelete.class);
+        String idName = getIdName();
+        String hql = null;
+        Object stateValue = null;
+
+        if (stateDelete != null) {
+            stateValue = ConvertUtils.convertToObject(stateDelete.value(), stateDelete.type().getValue());
+            hql = "update " + getEntityName() + " set " + stateDelete.propertyName() + " = :state where " + idName + " in (:ids)";
+        } else {
+            hql = "delete from " + getEntityName() + " where " + idName + " in (:ids)";
+        }
+
+        int count = 0;
+        for (List<PK> chunk : Lists.partition(ids, IN_CLAUSE_SIZE)) {
+            Query query = getSession().createQuery(hql);
+            query.setParameterList("ids", chunk);
+            if (stateDelete != null) {
+                query.setParameter("state", stateValue);
+            }
+            count += query.executeUpdate();
         }
 
+        evict(ids);
+        publishInvalidation(ids);
+        return count;
     }
 
     /**
@@ -284,7 +619,78 @@ public class BasicHibernateDao<T, PK extends Serializable> {
     }
 
     /**
-     * 按PK列表获取对象列表.
+     * 按PK获取只读对象.设置了{@link BatchingEntityLoader}时与其他线程同一时间窗口内的请求合并为一条in查询,
+     * 返回调用方独有的游离对象,不受当前Session管理,修改不会保存,也看不到当前事务中未提交的修改;
+     * 没有设置时与{@link #get(java.io.Serializable)}相同,返回当前Session管理的持久化对象.
+     * 调用方不应依赖两者的区别,只将结果用于读取
+     *
+     * @param id 主键ID
+     * @return orm实体
+     */
+    public T getInBatch(PK id) {
+        if (batchingEntityLoader == null) {
+            return get(id);
+        }
+        return batchingEntityLoader.load(id);
+    }
+
+    /**
+     * 设置批量加载器,开启{@link #getInBatch(java.io.Serializable)}的并发请求合并
+     *
+     * @param batchingEntityLoader 批量加载器
+     */
+    public void setBatchingEntityLoader(BatchingEntityLoader<T, PK> batchingEntityLoader) {
+        this.batchingEntityLoader = batchingEntityLoader;
+    }
+
+    /**
+     * 合并并发的相同查询.方法名与参数都相同的调用同时只执行一次,其他调用等待并共享结果,执行完成后不保留结果.
+     * 结果会被多个线程的Session共享,回调不应返回持久化对象,应返回主键或标量值,由各调用方再从自己的Session获取对象
+     * <p/>
+     * <pre>
+     * Long id = executeSingleFlight("getIdByName", new Object[]{name}, new Callable&lt;Long&gt;() {
+     *     public Long call() {
+     *         return findUniqueByQuery("select m.id from Member m where m.name = ?", name);
+     *     }
+     * });
+     * </pre>
+     *
+     * @param method   方法名
+     * @param args     方法参数,参数需要正确实现equals与hashCode
+     * @param callback 查询回调
+     * @return 查询结果
+     */
+    protected <X> X executeSingleFlight(String method, Object[] args, Callable<X> callback) {
+        List<Object> key = new ArrayList<Object>(args.length + 1);
+        key.add(method);
+        key.addAll(Arrays.asList(args));
+        return (X) singleFlight.execute(key, (Callable<Object>) callback);
+    }
+
+    /**
+     * 获取合并并发查询的统计,如被合并的调用次数
+     *
+     * @return {@link SingleFlight}
+     */
+    public SingleFlight<List<Object>, Object> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * 按自然主键(@NaturalId)获取对象,实体配置了@NaturalIdCache时优先从二级缓存获取主键
+     *
+     * @param naturalId 自然主键值
+     * @return orm实体,不存在时返回null
+     */
+    public T getByNaturalId(Object naturalId) {
+        Assert.notNull(naturalId, "naturalId不能为空");
+        return (T) getSession().bySimpleNaturalId(entityClass).load(naturalId);
+    }
+
+    /**
+     * 按PK列表获取对象列表,返回顺序与ids一致,重复或不存在的主键忽略.
+     * 主键按{@link #setInClauseSize(int)}分片查询,每个分片补齐到固定的几档长度;
+     * 设置了{@link #setInQueryExecutor(java.util.concurrent.ExecutorService)}时多个分片在不同的连接上并行查询
      *
      * @param ids 主键ID集合
      * @return List
@@ -293,17 +699,85 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         if (CollectionUtils.isEmpty(ids)) {
             return Collections.emptyList();
         }
-        return createCriteria(Restrictions.in(getIdName(), ids)).list();
+
+        Set<PK> distinctIds = new LinkedHashSet<PK>(ids);
+        List<List<PK>> chunks = InClauseSupport.partition(distinctIds, inClauseSize);
+
+        List<T> entities;
+        if (inQueryExecutor != null && chunks.size() > 1) {
+            entities = getInParallel(chunks);
+        } else {
+            entities = new ArrayList<T>(distinctIds.size());
+            for (List<PK> chunk : chunks) {
+                entities.addAll(createCriteria(Restrictions.in(getIdName(), chunk)).list());
+            }
+        }
+
+        Session session = getSession();
+        Map<Serializable, T> entityMap = new HashMap<Serializable, T>(entities.size() * 2);
+        for (T entity : entities) {
+            entityMap.put(getIdentifier(session, entity), entity);
+        }
+
+        List<T> result = new ArrayList<T>(entityMap.size());
+        for (PK id : distinctIds) {
+            T entity = entityMap.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
     }
 
     /**
-     * 按PK列表获取对象列表.
+     * 按PK列表获取对象列表,返回顺序与ids一致,重复或不存在的主键忽略.
      *
      * @param ids 主键ID数据
      * @return List
      */
     public List<T> get(PK[] ids) {
-        return createCriteria(Restrictions.in(getIdName(), ids)).list();
+        if (ArrayUtils.isEmpty(ids)) {
+            return Collections.emptyList();
+        }
+        return get(Arrays.asList(ids));
+    }
+
+    /**
+     * 每个分片在独立的StatelessSession中并行查询,返回的对象为游离状态,
+     * 也看不到当前事务中未提交的修改
+     *
+     * @param chunks 补齐后的主键分片
+     * @return List
+     */
+    private List<T> getInParallel(List<List<PK>> chunks) {
+        final String idName = getIdName();
+        List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>(chunks.size());
+        for (final List<PK> chunk : chunks) {
+            tasks.add(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    StatelessSession session = sessionFactory.openStatelessSession();
+                    try {
+                        return session.createCriteria(entityClass).add(Restrictions.in(idName, chunk)).list();
+                    } finally {
+                        session.close();
+                    }
+                }
+            });
+        }
+
+        List<T> entities = new ArrayList<T>();
+        try {
+            for (Future<List<T>> future : inQueryExecutor.invokeAll(tasks)) {
+                entities.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HibernateException("并行查询被中断", e);
+        } catch (ExecutionException e) {
+            throw new HibernateException("并行查询失败", e.getCause());
+        }
+        return entities;
     }
 
     /**
@@ -388,60 +862,36 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         }
     }
 
-    private void setQueryTransform(Class transferClass, SQLQuery query) {
-        if (transferClass != null) {
-            List<Field> fieldList = new ArrayList<Field>();
-            Field[] fields = transferClass.getDeclaredFields();
-            for (Field field : fields) {
-                fieldList.add(field);
-            }
-            //暂不使用递归获取父类fields方法 (getSuperclassFields)
-            Class superclass = transferClass.getSuperclass();
-            if(superclass != null) {
-                Field[] superFields = superclass.getDeclaredFields();
-                for (Field superField : superFields) {
-                    fieldList.add(superField);
-                }
-            }
-
-            fields = fieldList.toArray(new Field[fieldList.size()]);
-            for (int i = 0; i < fields.length; i++) {
-                if (fields[i].getType().getName().equals(Long.class.getName())) {
-                    query.addScalar(fields[i].getName(), LongType.INSTANCE);
-                } else if (fields[i].getType().getName().equals(Date.class.getName())) {
-                    query.addScalar(fields[i].getName(), TimestampType.INSTANCE);
-                } else if (fields[i].getType().getName().equals(BigDecimal.class.getName())) {
-                    query.addScalar(fields[i].getName(), BigDecimalType.INSTANCE);
-                } else if (fields[i].getType().getName().equals(Double.class.getName())) {
-                    query.addScalar(fields[i].getName(), DoubleType.INSTANCE);
-                } else if (fields[i].getType().getName().equals(Integer.class.getName()) || fields[i].getType().getName().equalsIgnoreCase("int")) {
-                    query.addScalar(fields[i].getName(), IntegerType.INSTANCE);
-                } else if (fields[i].getType().getName().equals(Boolean.class.getName())) {
-                    query.addScalar(fields[i].getName(), BooleanType.INSTANCE);
-                } else {
-                    query.addScalar(fields[i].getName(), StringType.INSTANCE);
-                }
-                query.setResultTransformer(Transformers.aliasToBean(transferClass));
-            }
+    /**
+     * 通过PostgreSQL的EXPLAIN估算SQL查询的结果行数,不执行查询.无法获取估算值时返回-1
+     *
+     * @param queryString sql
+     * @param values      命名参数,按名称绑定.
+     * @return long
+     */
+    public long estimateSqlResult(String queryString, Map<String, Object> values) {
+        String explainSql = "explain (format json) " + getQueryMetadata(queryString).getUnorderedQuery();
+        //explain返回json类型的列,Hibernate的PostgreSQL方言没有该类型的映射,需要指定为字符串
+        Object plan = createSQLQuery(explainSql, null, values).addScalar("QUERY PLAN", StringType.INSTANCE).uniqueResult();
+
+        Matcher matcher = PLAN_ROWS_PATTERN.matcher(String.valueOf(plan));
+        if (!matcher.find()) {
+            return -1;
         }
+        return Long.parseLong(matcher.group(1));
     }
 
     /**
-     * 递归获取父类 fields
-     * @param transferClass
-     * @param fieldList
+     * 按DTO类型缓存的映射方案设置SQLQuery的标量列与ResultTransformer,参考{@link BeanResultMapping}
+     *
+     * @param transferClass DTO类型,为null时不做处理
+     * @param query         SQLQuery
      */
-    private void getSuperclassFields(Class transferClass, List<Field> fieldList) {
-        Class superclass = transferClass.getSuperclass();
-        if(superclass != null) {
-            Field[] superFields = superclass.getDeclaredFields();
-            for (Field superField : superFields) {
-                fieldList.add(superField);
-            }
-
-            if (superclass.getSuperclass() != null) {
-                getSuperclassFields(superclass, fieldList);
-            }
+    protected void setQueryTransform(Class transferClass, SQLQuery query) {
+        if (transferClass != null) {
+            BeanResultMapping mapping = BeanResultMapping.forClass(transferClass);
+            mapping.addScalars(query);
+            query.setResultTransformer(mapping.getResultTransformer());
         }
     }
 
@@ -501,6 +951,148 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         return (X) createSQLQuery(queryOrNamedQuery, null, values).uniqueResult();
     }
 
+    /**
+     * 流式处理全部对象,每次只从数据库获取{@link #getFetchSize()}条记录,
+     * 每处理{@link #getBatchSize()}条记录flush并clear一次session,堆内存占用不随记录数增长
+     *
+     * @param callback 行处理回调
+     * @param orders   排序对象，不需要排序，可以不传
+     * @return 处理的记录数
+     */
+    public int scrollAll(ScrollCallback<T> callback, Order... orders) {
+        Criteria c = createCriteria();
+        setOrderToCriteria(c, orders);
+        return scroll(c, callback);
+    }
+
+    /**
+     * 通过HQL流式查询全部,每次只从数据库获取{@link #getFetchSize()}条记录,
+     * 每处理{@link #getBatchSize()}条记录flush并clear一次session,堆内存占用不随记录数增长
+     *
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     * @param values            命名参数,按名称绑定.
+     * @param callback          行处理回调
+     * @return 处理的记录数
+     */
+    public <X> int scrollByQuery(String queryOrNamedQuery, Map<String, ?> values, ScrollCallback<X> callback) {
+        Query query = createQuery(queryOrNamedQuery, values);
+        query.setFetchSize(getFetchSize());
+        return scroll(query.scroll(ScrollMode.FORWARD_ONLY), callback);
+    }
+
+    /**
+     * 通过SQL流式查询全部,每次只从数据库获取{@link #getFetchSize()}条记录,
+     * 每处理{@link #getBatchSize()}条记录flush并clear一次session,堆内存占用不随记录数增长
+     *
+     * @param queryOrNamedSQLQuery sql 或者 NamedSQLQuery
+     * @param aliasMap             实体别名,参考{@link #createSQLQuery(String, java.util.Map, java.util.Map)}
+     * @param values               命名参数,按名称绑定.
+     * @param callback             行处理回调
+     * @return 处理的记录数
+     */
+    public <X> int scrollBySQLQuery(String queryOrNamedSQLQuery, Map<String, Class> aliasMap, Map<String, ?> values, ScrollCallback<X> callback) {
+        SQLQuery query = createSQLQuery(queryOrNamedSQLQuery, aliasMap, values);
+        query.setFetchSize(getFetchSize());
+        return scroll(query.scroll(ScrollMode.FORWARD_ONLY), callback);
+    }
+
+    /**
+     * 通过HQL在StatelessSession中流式查询全部.StatelessSession使用独立的连接与事务,不维护一级缓存和脏检查,
+     * 回调中得到的对象均为游离状态,适用于不需要当前事务的导出和对账等只读任务
+     *
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     * @param values            命名参数,按名称绑定.
+     * @param callback          行处理回调
+     * @return 处理的记录数
+     */
+    public <X> int scrollByQueryStateless(String queryOrNamedQuery, Map<String, ?> values, ScrollCallback<X> callback) {
+        Assert.hasText(queryOrNamedQuery, "queryOrNamedQuery不能为空");
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            //PostgreSQL只有在非autocommit模式下才会按fetchSize分批获取记录
+            Transaction transaction = session.beginTransaction();
+            try {
+                Query query = null;
+                if (getQueryMetadata(queryOrNamedQuery).isNamedQuery()) {
+                    query = session.getNamedQuery(queryOrNamedQuery);
+                } else {
+                    query = session.createQuery(queryOrNamedQuery);
+                }
+                if (values != null) {
+                    query.setProperties(values);
+                }
+                query.setFetchSize(getFetchSize());
+                query.setReadOnly(true);
+
+                int count = 0;
+                ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (results.next()) {
+                        callback.doWithRow((X) getScrollRow(results));
+                        count++;
+                    }
+                } finally {
+                    results.close();
+                }
+                transaction.commit();
+                return count;
+            } catch (RuntimeException e) {
+                //连接归还连接池前必须结束事务
+                transaction.rollback();
+                throw e;
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * 流式执行Criteria查询,辅助函数.
+     *
+     * @param c        Criteria对象
+     * @param callback 行处理回调
+     * @return 处理的记录数
+     */
+    protected <X> int scroll(Criteria c, ScrollCallback<X> callback) {
+        c.setFetchSize(getFetchSize());
+        return scroll(c.scroll(ScrollMode.FORWARD_ONLY), callback);
+    }
+
+    /**
+     * 逐行处理ScrollableResults,每处理{@link #getBatchSize()}条记录flush并clear一次session,处理完成后关闭results
+     *
+     * @param results  Hibernate ScrollableResults
+     * @param callback 行处理回调
+     * @return 处理的记录数
+     */
+    protected <X> int scroll(ScrollableResults results, ScrollCallback<X> callback) {
+        Session session = getSession();
+        int size = getBatchSize();
+        int count = 0;
+        try {
+            while (results.next()) {
+                callback.doWithRow((X) getScrollRow(results));
+                if (++count % size == 0) {
+                    flushAndClear(session);
+                }
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    /**
+     * 获取ScrollableResults当前行,只有一列时返回该列的值,否则返回Object[]
+     *
+     * @param results Hibernate ScrollableResults
+     * @return Object
+     */
+    private Object getScrollRow(ScrollableResults results) {
+        Object[] row = results.get();
+        return row.length == 1 ? row[0] : row;
+    }
+
     /**
      * 获取全部对象
      *
@@ -513,6 +1105,42 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         return c.list();
     }
 
+    /**
+     * 获取实体二级缓存区域的统计信息,实体未配置缓存或未开启hibernate.generate_statistics时返回null
+     *
+     * @return {@link org.hibernate.stat.SecondLevelCacheStatistics}
+     */
+    public SecondLevelCacheStatistics getCacheStatistics() {
+        EntityPersister persister = ((SessionFactoryImplementor) sessionFactory).getEntityPersister(getEntityName());
+        if (!persister.hasCache() || !sessionFactory.getStatistics().isStatisticsEnabled()) {
+            return null;
+        }
+        return sessionFactory.getStatistics().getSecondLevelCacheStatistics(persister.getCacheAccessStrategy().getRegion().getName());
+    }
+
+    /**
+     * 获取实体二级缓存的命中率,没有统计信息或还没有访问时返回0
+     *
+     * @return double
+     */
+    public double getCacheHitRatio() {
+        SecondLevelCacheStatistics statistics = getCacheStatistics();
+        if (statistics == null) {
+            return 0;
+        }
+        long total = statistics.getHitCount() + statistics.getMissCount();
+        return total == 0 ? 0 : (double) statistics.getHitCount() / total;
+    }
+
+    /**
+     * 从二级缓存中移除对象,不影响当前Session
+     *
+     * @param id 主键ID
+     */
+    public void evictCache(PK id) {
+        sessionFactory.getCache().evictEntity(entityClass, id);
+    }
+
     /**
      * 获取实体的总记录数
      *
@@ -522,6 +1150,27 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         return countHqlResult("from " + getEntityName() + " " + DEFAULT_ALIAS).intValue();
     }
 
+    /**
+     * 通过PostgreSQL统计信息(pg_class.reltuples)估算实体的总记录数,不扫描表.
+     * 估算值在ANALYZE或autovacuum后更新,表从未分析过时返回-1
+     *
+     * @return long
+     */
+    public long estimateEntityCount() {
+        EntityPersister persister = ((SessionFactoryImplementor) sessionFactory).getEntityPersister(entityClass.getName());
+        String tableName = ((AbstractEntityPersister) persister).getTableName();
+
+        Number reltuples = (Number) getSession()
+                .createSQLQuery("select reltuples from pg_class where oid = cast(:tableName as regclass)")
+                .setParameter("tableName", tableName)
+                .uniqueResult();
+
+        if (reltuples == null || reltuples.longValue() <= 0) {
+            return -1;
+        }
+        return reltuples.longValue();
+    }
+
     /**
      * 根据Criterion可变数组创建Criteria对象
      *
@@ -536,6 +1185,13 @@ public class BasicHibernateDao<T, PK extends Serializable> {
 
             criteria.add(criterion);
         }
+
+        if (cacheQueries) {
+            criteria.setCacheable(true);
+            if (StringUtils.isNotEmpty(queryCacheRegion)) {
+                criteria.setCacheRegion(queryCacheRegion);
+            }
+        }
         return criteria;
     }
 
@@ -564,17 +1220,23 @@ public class BasicHibernateDao<T, PK extends Serializable> {
     protected Query createQuery(String queryOrNamedQuery, Object... values) {
         Assert.hasText(queryOrNamedQuery, "queryOrNamedQuery不能为空");
 
-        SessionFactoryImpl factory = (SessionFactoryImpl) sessionFactory;
-        NamedQueryDefinition nqd = factory.getNamedQuery(queryOrNamedQuery);
         Query query = null;
+        QueryMetadata metadata = getQueryMetadata(queryOrNamedQuery);
 
-        if (nqd != null) {
+        if (metadata.isNamedQuery()) {
             query = getSession().getNamedQuery(queryOrNamedQuery);
         } else {
             query = getSession().createQuery(queryOrNamedQuery);
         }
 
-        setQueryValues(query, values);
+        if (cacheQueries) {
+            query.setCacheable(true);
+            if (StringUtils.isNotEmpty(queryCacheRegion)) {
+                query.setCacheRegion(queryCacheRegion);
+            }
+        }
+
+        setQueryValues(query, metadata, values);
         return query;
     }
 
@@ -602,16 +1264,15 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      */
     protected SQLQuery createSQLQuery(String queryOrNamedSQLQuery, Map<String, Class> aliasMap, Object... values) {
         Assert.hasText(queryOrNamedSQLQuery, "queryOrNamedSQLQuery不能为空");
-        SessionFactoryImpl factory = (SessionFactoryImpl) sessionFactory;
-        NamedSQLQueryDefinition nsqlqd = factory.getNamedSQLQuery(queryOrNamedSQLQuery);
         Query query = null;
-        if (nsqlqd != null) {
+        QueryMetadata metadata = getQueryMetadata(queryOrNamedSQLQuery);
+        if (metadata.isNamedSQLQuery()) {
             query = getSession().getNamedQuery(queryOrNamedSQLQuery);
         } else {
             query = getSession().createSQLQuery(queryOrNamedSQLQuery);
         }
 
-        setQueryValues(query, values);
+        setQueryValues(query, metadata, values);
         SQLQuery sqlQuery = (SQLQuery) query;
         if (aliasMap != null && aliasMap.size() > 0) {
             for (Iterator<Map.Entry<String, Class>> it = aliasMap.entrySet().iterator(); it.hasNext(); ) {
@@ -631,21 +1292,29 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @param values 参数值可变数组
      */
     protected void setQueryValues(Query query, Object... values) {
+        setQueryValues(query, getQueryMetadata(query.getQueryString()), values);
+    }
+
+    /**
+     * 设置参数值到query的hql中.有命名参数时按命名参数在语句中第一次出现的顺序绑定,否则按位置绑定
+     *
+     * @param query    Hibernate Query
+     * @param metadata 查询语句的解析结果
+     * @param values   参数值可变数组
+     */
+    protected void setQueryValues(Query query, QueryMetadata metadata, Object... values) {
         if (ArrayUtils.isEmpty(values)) {
             return;
         }
-        AbstractQueryImpl impl = (AbstractQueryImpl) query;
-        String[] params = impl.getNamedParameters();
-
-        int methodParameterPosition = params.length - 1;
+        List<String> names = metadata.getNamedParameters();
 
-        if (impl.hasNamedParameters()) {
-            for (String p : params) {
-                Object o = values[methodParameterPosition--];
-                query.setParameter(p, o);
+        if (!names.isEmpty()) {
+            Assert.isTrue(names.size() == values.length, "命名参数" + names + "与参数值的个数不相等");
+            for (int i = 0; i < values.length; i++) {
+                query.setParameter(names.get(i), values[i]);
             }
         } else {
-            for (Integer i = 0; i < values.length; i++) {
+            for (int i = 0; i < values.length; i++) {
                 query.setParameter(i, values[i]);
             }
         }
@@ -720,39 +1389,48 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @return String
      */
     private String prepareCountHql(String orgHql) {
-        String countField = StringUtils.substringBetween(orgHql, "select", "from");
-        String countHql = MessageFormat.format("select count ({0}) {1} ",
-                StringUtils.isEmpty(countField) ? "*" : countField,
-                removeSelect(removeOrders(orgHql)));
-        return countHql;
+        return getQueryMetadata(orgHql).getCountQuery();
     }
 
     /**
-     * 移除from前面的select 字段 返回移除后的hql字符串
+     * 获取查询语句的解析结果.解析结果按查询语句缓存,同一语句只解析一次
      *
-     * @param hql
-     * @return String
+     * @param queryOrNamedQuery hql、sql或者NamedQuery、NamedSQLQuery
+     * @return {@link QueryMetadata}
      */
-    private String removeSelect(String hql) {
-        int beginPos = hql.toLowerCase().indexOf("from");
-        return hql.substring(beginPos);
+    public QueryMetadata getQueryMetadata(String queryOrNamedQuery) {
+        return queryMetadataCache.getUnchecked(queryOrNamedQuery);
     }
 
     /**
-     * 删除hql中的 order by的字段,返回删除后的新字符串
+     * 获取查询语句解析结果缓存的命中统计
      *
-     * @param hql
-     * @return String
+     * @return {@link com.google.common.cache.CacheStats}
+     */
+    public CacheStats getQueryMetadataStats() {
+        return queryMetadataCache.stats();
+    }
+
+    /**
+     * 解析查询语句,辅助函数.
+     *
+     * @param queryOrNamedQuery hql、sql或者NamedQuery、NamedSQLQuery
+     * @return {@link QueryMetadata}
      */
-    private String removeOrders(String hql) {
-        Pattern p = Pattern.compile("order\\s*by[\\w|\\W|\\s|\\S]*", Pattern.CASE_INSENSITIVE);
-        Matcher m = p.matcher(hql);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            m.appendReplacement(sb, "");
+    protected QueryMetadata createQueryMetadata(String queryOrNamedQuery) {
+        SessionFactoryImpl factory = (SessionFactoryImpl) sessionFactory;
+
+        NamedQueryDefinition nqd = factory.getNamedQuery(queryOrNamedQuery);
+        if (nqd != null) {
+            return new QueryMetadata(queryOrNamedQuery, nqd.getQueryString(), true, false);
+        }
+
+        NamedSQLQueryDefinition nsqlqd = factory.getNamedSQLQuery(queryOrNamedQuery);
+        if (nsqlqd != null) {
+            return new QueryMetadata(queryOrNamedQuery, nsqlqd.getQueryString(), false, true);
         }
-        m.appendTail(sb);
-        return sb.toString();
+
+        return new QueryMetadata(queryOrNamedQuery, queryOrNamedQuery, false, false);
     }
 
     /**
@@ -796,7 +1474,9 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @param entity 持久化实例
      */
     public void merge(T entity) {
-        getSession().merge(entity);
+        Session session = getSession();
+        session.merge(entity);
+        publishInvalidation(session, entity);
     }
 
     /**
@@ -806,7 +1486,9 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @param entityName 持久化对象名称
      */
     public void merge(String entityName, T entity) {
-        getSession().merge(entityName, entity);
+        Session session = getSession();
+        session.merge(entityName, entity);
+        publishInvalidation(session, entity);
     }
 
     /**
@@ -842,6 +1524,25 @@ public class BasicHibernateDao<T, PK extends Serializable> {
         getSession().evict(entity);
     }
 
+    /**
+     * 把主键为ids的对象从当前session中清除,没有在session中的id会被忽略.
+     * 用于批量update/delete语句执行后,避免session中保留旧状态的对象
+     *
+     * @param ids 主键ID集合
+     */
+    protected void evict(Collection<PK> ids) {
+        SessionImplementor session = (SessionImplementor) getSession();
+        PersistenceContext persistenceContext = session.getPersistenceContext();
+        EntityPersister persister = ((SessionFactoryImplementor) sessionFactory).getEntityPersister(getEntityName());
+
+        for (PK id : ids) {
+            Object entity = persistenceContext.getEntity(session.generateEntityKey(id, persister));
+            if (entity != null) {
+                ((Session) session).evict(entity);
+            }
+        }
+    }
+
     /**
      * 把session所有缓存区的对象全部清除，但不包括正在操作中的对象
      */
@@ -918,7 +1619,9 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @return int
      */
     public int executeUpdate(String queryOrNamedQuery, Map<String, ?> values) {
-        return createQuery(queryOrNamedQuery, values).executeUpdate();
+        int count = createQuery(queryOrNamedQuery, values).executeUpdate();
+        publishHqlInvalidation(queryOrNamedQuery);
+        return count;
     }
 
     /**
@@ -929,18 +1632,143 @@ public class BasicHibernateDao<T, PK extends Serializable> {
      * @return int
      */
     public int executeUpdate(String queryOrNamedQuery, Object... values) {
-        return createQuery(queryOrNamedQuery, values).executeUpdate();
+        int count = createQuery(queryOrNamedQuery, values).executeUpdate();
+        publishHqlInvalidation(queryOrNamedQuery);
+        return count;
     }
 
 
     /**
-     * 执行SQL进行批量修改/删除操作.成功后更新记录数
+     * 执行SQL进行批量修改/删除操作.成功后更新记录数.
+     * <p/>
+     * 没有指定entityClasses且NamedSQLQuery也没有声明synchronize时无法知道修改了哪些表,
+     * 与Hibernate清除本节点缓存的方式一致,其他节点会清除全部实体缓存
      *
      * @param queryOrNamedQuery sql 或者Hibernate的NamedQuery
      * @param values            参数值
+     * @param entityClasses     语句修改的实体
      * @return int
      */
-    public int executeSQLUpdate(String queryOrNamedQuery, Map<String, ?> values) {
-        return createSQLQuery(queryOrNamedQuery, null, values).executeUpdate();
+    public int executeSQLUpdate(String queryOrNamedQuery, Map<String, ?> values, Class<?>... entityClasses) {
+        SQLQuery query = createSQLQuery(queryOrNamedQuery, null, values);
+        for (Class<?> entityClass : entityClasses) {
+            query.addSynchronizedEntityClass(entityClass);
+        }
+        int count = query.executeUpdate();
+        publishSQLInvalidation(query);
+        return count;
+    }
+
+    /**
+     * 获取HQL修改或查询的实体名称.根据HQL查询计划中的表(query space)找到映射到这些表的实体,
+     * 可能与当前DAO的实体不同
+     *
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     * @return Set
+     */
+    public Set<String> getAffectedEntityNames(String queryOrNamedQuery) {
+        String queryString = getQueryMetadata(queryOrNamedQuery).getQueryString();
+        HQLQueryPlan plan = ((SessionFactoryImplementor) sessionFactory).getQueryPlanCache()
+                .getHQLQueryPlan(queryString, false, Collections.<String, Filter>emptyMap());
+        return getEntityNamesByQuerySpaces(plan.getQuerySpaces());
+    }
+
+    /**
+     * 获取使用了指定表(query space)的实体名称
+     *
+     * @param querySpaces 表名称
+     * @return Set
+     */
+    protected Set<String> getEntityNamesByQuerySpaces(Collection<?> querySpaces) {
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) sessionFactory;
+        Set<String> entityNames = new LinkedHashSet<String>();
+        for (String entityName : sessionFactory.getAllClassMetadata().keySet()) {
+            for (Serializable querySpace : factory.getEntityPersister(entityName).getQuerySpaces()) {
+                if (querySpaces.contains(querySpace)) {
+                    entityNames.add(entityName);
+                    break;
+                }
+            }
+        }
+        return entityNames;
+    }
+
+    /**
+     * 设置跨节点缓存失效总线.设置后本DAO的update、saveOrUpdate、merge、delete和executeUpdate等写操作
+     * 会在当前事务中发布被修改实体的主键,其他节点收到后清除本地缓存
+     *
+     * @param cacheInvalidationBus 缓存失效总线
+     */
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * 获取跨节点缓存失效总线,没有设置时返回null
+     *
+     * @return {@link CacheInvalidationBus}
+     */
+    public CacheInvalidationBus getCacheInvalidationBus() {
+        return cacheInvalidationBus;
+    }
+
+    /**
+     * 发布实体失效消息,没有设置{@link CacheInvalidationBus}时不做处理
+     *
+     * @param ids 被修改的主键ID,为null时表示该实体的全部记录(如按条件批量更新)
+     */
+    protected void publishInvalidation(Collection<? extends Serializable> ids) {
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(getSession(), getEntityName(), ids);
+        }
+    }
+
+    /**
+     * 发布批量HQL修改的失效消息,HQL影响的每个实体发布一条
+     *
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     */
+    protected void publishHqlInvalidation(String queryOrNamedQuery) {
+        if (cacheInvalidationBus == null) {
+            return;
+        }
+        for (String entityName : getAffectedEntityNames(queryOrNamedQuery)) {
+            cacheInvalidationBus.publish(getSession(), entityName, null);
+        }
+    }
+
+    /**
+     * 发布批量SQL修改的失效消息.SQLQuery声明了修改的表时按表对应的实体发布,否则发布清除全部缓存的消息
+     *
+     * @param query 已执行的SQLQuery
+     */
+    protected void publishSQLInvalidation(SQLQuery query) {
+        if (cacheInvalidationBus == null) {
+            return;
+        }
+        Collection<String> querySpaces = ReflectionUtils.getFieldValue(query, "querySpaces");
+        if (CollectionUtils.isEmpty(querySpaces)) {
+            cacheInvalidationBus.publishAll(getSession());
+            return;
+        }
+        for (String entityName : getEntityNamesByQuerySpaces(querySpaces)) {
+            cacheInvalidationBus.publish(getSession(), entityName, null);
+        }
+    }
+
+    /**
+     * 发布单个实体的失效消息
+     */
+    private void publishInvalidation(Session session, T entity) {
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(session, getEntityName(), Collections.singletonList(getIdentifier(session, entity)));
+        }
+    }
+
+    /**
+     * 获取实体的主键,实体可以是游离状态
+     */
+    private Serializable getIdentifier(Session session, T entity) {
+        return sessionFactory.getClassMetadata(entityClass).getIdentifier(entity, (SessionImplementor) session);
     }
 }
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.type.Type;
+import org.springframework.util.Assert;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并发按主键获取对象的批量加载器.
+ * <p/>
+ * 在一个很短的时间窗口内,多个线程对同一实体的按主键获取请求会被合并为一条in查询:第一个请求的线程作为leader等待窗口结束
+ * (或请求数达到上限)后执行查询,其他线程等待查询完成后取得各自的对象.
+ * <p/>
+ * 已在二级缓存中的对象通过临时Session从缓存读取,其余主键在StatelessSession中执行in查询,in子句按
+ * {@link InClauseSupport}补齐长度以复用执行计划.查询使用连接池中独立的连接,同时执行的批次数受
+ * {@link #setMaxConcurrentBatches(int)}限制,避免高并发时耗尽连接池.
+ * <p/>
+ * 一批只保存查询到的属性值,每个请求各自创建一个新的对象并复制属性值(可变类型如Date按Hibernate类型深复制),
+ * 不同线程不会共享同一个对象.返回的对象为游离状态,也看不到调用方事务中未提交的修改,只适用于只读场景.
+ *
+ * @param <T>  ORM对象
+ * @param <PK> 主键Id类型
+ * @author vincent
+ */
+@SuppressWarnings("unchecked")
+public class BatchingEntityLoader<T, PK extends Serializable> {
+
+    /**
+     * 默认的合并窗口(毫秒)
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    /**
+     * 默认每批最多合并的主键个数
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * 默认同时执行的最大批次数,即最多额外占用的连接数
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 2;
+
+    private final SessionFactory sessionFactory;
+    private final Class<T> entityClass;
+
+    private long windowMillis = DEFAULT_WINDOW_MILLIS;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile Semaphore batchPermits = new Semaphore(DEFAULT_MAX_CONCURRENT_BATCHES, true);
+
+    private final Object lock = new Object();
+    private Batch current;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong loadedCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicInteger largestBatchSize = new AtomicInteger();
+
+    /**
+     * 批量加载器
+     *
+     * @param sessionFactory Hibernate SessionFactory
+     * @param entityClass    ORM对象类型
+     */
+    public BatchingEntityLoader(SessionFactory sessionFactory, Class<T> entityClass) {
+        Assert.notNull(sessionFactory, "sessionFactory不能为空");
+        Assert.notNull(entityClass, "entityClass不能为空");
+        this.sessionFactory = sessionFactory;
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * 设置合并窗口(毫秒),即第一个请求最多额外等待的时间
+     *
+     * @param windowMillis 合并窗口
+     */
+    public void setWindowMillis(long windowMillis) {
+        Assert.isTrue(windowMillis >= 0, "合并窗口不能小于0");
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * 设置每批最多合并的主键个数,达到后立即执行查询
+     *
+     * @param maxBatchSize 每批最多主键个数
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        Assert.isTrue(maxBatchSize > 0, "每批主键个数必须大于0");
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 设置同时执行的最大批次数.每批在执行期间占用一个连接,达到上限后新的批次等待已有批次完成
+     *
+     * @param maxConcurrentBatches 最大批次数
+     */
+    public void setMaxConcurrentBatches(int maxConcurrentBatches) {
+        Assert.isTrue(maxConcurrentBatches > 0, "最大批次数必须大于0");
+        this.batchPermits = new Semaphore(maxConcurrentBatches, true);
+    }
+
+    /**
+     * 按主键获取对象,与同一窗口内其他线程的请求合并为一条查询
+     *
+     * @param id 主键ID
+     * @return 调用方独有的游离状态orm实体,不存在时返回null
+     */
+    public T load(PK id) {
+        if (id == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        boolean leader = false;
+        Batch batch = null;
+
+        synchronized (lock) {
+            if (current == null) {
+                current = new Batch();
+                leader = true;
+            }
+            batch = current;
+            batch.ids.add(id);
+
+            if (batch.ids.size() >= maxBatchSize) {
+                current = null;
+                lock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            synchronized (lock) {
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                long remaining = deadline - System.nanoTime();
+                while (current == batch && remaining > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    remaining = deadline - System.nanoTime();
+                }
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            batch.execute();
+        } else {
+            batch.await();
+        }
+
+        requestCount.incrementAndGet();
+        waitNanos.addAndGet(System.nanoTime() - start);
+
+        return batch.get(id);
+    }
+
+    /**
+     * 获取已执行的批次数
+     *
+     * @return long
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * 获取已处理的请求数
+     *
+     * @return long
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 获取从二级缓存中取得的对象个数
+     *
+     * @return long
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * 获取平均每批查询的主键个数
+     *
+     * @return double
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0 : (double) loadedCount.get() / batches;
+    }
+
+    /**
+     * 获取最大一批查询的主键个数
+     *
+     * @return int
+     */
+    public int getLargestBatchSize() {
+        return largestBatchSize.get();
+    }
+
+    /**
+     * 获取请求的平均等待时间(毫秒),包括合并窗口与查询时间
+     *
+     * @return double
+     */
+    public double getAverageWaitMillis() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : (double) waitNanos.get() / requests / 1000000;
+    }
+
+    /**
+     * 一批合并的请求
+     */
+    private class Batch {
+
+        private final Set<PK> ids = new LinkedHashSet<PK>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        //主键到属性值的快照,执行完成后只读
+        private final Map<Serializable, Object[]> results = new HashMap<Serializable, Object[]>();
+        private RuntimeException error;
+
+        /**
+         * 先从二级缓存读取,其余主键在StatelessSession中执行in查询,执行时本批已不再接受新的请求
+         */
+        private void execute() {
+            List<PK> batchIds = new ArrayList<PK>(ids);
+            Semaphore permits = batchPermits;
+            boolean acquired = false;
+            try {
+                permits.acquire();
+                acquired = true;
+                List<PK> missing = loadFromCache(batchIds);
+                if (!missing.isEmpty()) {
+                    loadFromDatabase(missing);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = new IllegalStateException("批量加载被中断", e);
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                if (acquired) {
+                    permits.release();
+                }
+                done.countDown();
+            }
+
+            batchCount.incrementAndGet();
+            loadedCount.addAndGet(batchIds.size());
+            int largest = largestBatchSize.get();
+            while (batchIds.size() > largest && !largestBatchSize.compareAndSet(largest, batchIds.size())) {
+                largest = largestBatchSize.get();
+            }
+        }
+
+        /**
+         * StatelessSession不读取二级缓存,缓存中存在的对象通过临时Session读取,返回未命中的主键
+         */
+        private List<PK> loadFromCache(List<PK> batchIds) {
+            Cache cache = sessionFactory.getCache();
+            ClassMetadata metadata = sessionFactory.getClassMetadata(entityClass);
+            List<PK> missing = new ArrayList<PK>();
+            Session session = null;
+            try {
+                for (PK id : batchIds) {
+                    if (!cache.containsEntity(entityClass, id)) {
+                        missing.add(id);
+                        continue;
+                    }
+                    if (session == null) {
+                        session = sessionFactory.openSession();
+                        session.setDefaultReadOnly(true);
+                    }
+                    T entity = (T) session.get(entityClass, id);
+                    if (entity == null) {
+                        missing.add(id);
+                    } else {
+                        results.put(id, metadata.getPropertyValues(entity));
+                        cacheHitCount.incrementAndGet();
+                    }
+                }
+            } finally {
+                if (session != null) {
+                    session.close();
+                }
+            }
+            return missing;
+        }
+
+        private void loadFromDatabase(List<PK> missing) {
+            StatelessSession session = sessionFactory.openStatelessSession();
+            try {
+                ClassMetadata metadata = sessionFactory.getClassMetadata(entityClass);
+                List<T> list = session.createCriteria(entityClass)
+                        .add(InClauseSupport.in(metadata.getIdentifierPropertyName(), missing.toArray(), BasicHibernateDao.IN_CLAUSE_SIZE))
+                        .list();
+                for (T entity : list) {
+                    results.put(metadata.getIdentifier(entity, (SessionImplementor) session), metadata.getPropertyValues(entity));
+                }
+            } finally {
+                session.close();
+            }
+        }
+
+        private void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 为调用方创建新的对象,属性值按Hibernate类型深复制,关联对象不复制
+         */
+        private T get(PK id) {
+            if (error != null) {
+                throw error;
+            }
+            Object[] state = results.get(id);
+            if (state == null) {
+                return null;
+            }
+
+            ClassMetadata metadata = sessionFactory.getClassMetadata(entityClass);
+            Type[] types = metadata.getPropertyTypes();
+            Object[] values = new Object[state.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = types[i].deepCopy(state[i], (SessionFactoryImplementor) sessionFactory);
+            }
+            T entity = (T) metadata.instantiate(id, null);
+            metadata.setPropertyValues(entity, values);
+            return entity;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.ReflectionUtils;
+import org.hibernate.SQLQuery;
+import org.hibernate.bytecode.spi.ReflectionOptimizer;
+import org.hibernate.cfg.Environment;
+import org.hibernate.property.ChainedPropertyAccessor;
+import org.hibernate.property.PropertyAccessor;
+import org.hibernate.property.PropertyAccessorFactory;
+import org.hibernate.property.Setter;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.type.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SQL查询结果到DTO的映射方案.按DTO类型缓存,包含DTO及其所有父类的非静态字段、对应的Hibernate标量类型和属性写入方式.
+ * <p/>
+ * 属性都有getter/setter时使用Hibernate字节码提供者生成的访问类批量写入属性,否则使用缓存的Setter写入,
+ * 每行结果都不再需要按字段名查找属性.
+ *
+ * @author vincent
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class BeanResultMapping {
+
+    private static Logger logger = LoggerFactory.getLogger(BeanResultMapping.class);
+
+    private static final ConcurrentMap<Class, BeanResultMapping> MAPPINGS = new ConcurrentHashMap<Class, BeanResultMapping>();
+
+    private static final Map<Class, Type> SCALAR_TYPES = new HashMap<Class, Type>();
+
+    static {
+        SCALAR_TYPES.put(Long.class, LongType.INSTANCE);
+        SCALAR_TYPES.put(long.class, LongType.INSTANCE);
+        SCALAR_TYPES.put(Date.class, TimestampType.INSTANCE);
+        SCALAR_TYPES.put(BigDecimal.class, BigDecimalType.INSTANCE);
+        SCALAR_TYPES.put(Double.class, DoubleType.INSTANCE);
+        SCALAR_TYPES.put(double.class, DoubleType.INSTANCE);
+        SCALAR_TYPES.put(Integer.class, IntegerType.INSTANCE);
+        SCALAR_TYPES.put(int.class, IntegerType.INSTANCE);
+        SCALAR_TYPES.put(Boolean.class, BooleanType.INSTANCE);
+        SCALAR_TYPES.put(boolean.class, BooleanType.INSTANCE);
+    }
+
+    private final Class beanClass;
+    private final String[] propertyNames;
+    private final Type[] types;
+    private final Setter[] setters;
+    private final Map<String, Integer> propertyIndexes = new HashMap<String, Integer>();
+    private final ReflectionOptimizer optimizer;
+    private final ResultTransformer resultTransformer;
+
+    private BeanResultMapping(Class beanClass) {
+        this.beanClass = beanClass;
+
+        Map<String, Field> fields = new LinkedHashMap<String, Field>();
+        for (Class superClass = beanClass; superClass != null && superClass != Object.class; superClass = superClass.getSuperclass()) {
+            for (Field field : superClass.getDeclaredFields()) {
+                //子类字段覆盖父类同名字段
+                if (!Modifier.isStatic(field.getModifiers()) && !fields.containsKey(field.getName())) {
+                    fields.put(field.getName(), field);
+                }
+            }
+        }
+
+        int size = fields.size();
+        this.propertyNames = new String[size];
+        this.types = new Type[size];
+        this.setters = new Setter[size];
+
+        String[] getterNames = new String[size];
+        String[] setterNames = new String[size];
+        Class[] propertyClasses = new Class[size];
+        boolean optimizable = true;
+
+        PropertyAccessor accessor = new ChainedPropertyAccessor(new PropertyAccessor[]{
+                PropertyAccessorFactory.getPropertyAccessor(beanClass, null),
+                PropertyAccessorFactory.getPropertyAccessor("field")
+        });
+
+        int i = 0;
+        for (Field field : fields.values()) {
+            propertyNames[i] = field.getName();
+            propertyIndexes.put(field.getName(), i);
+            propertyClasses[i] = field.getType();
+            types[i] = SCALAR_TYPES.containsKey(field.getType()) ? SCALAR_TYPES.get(field.getType()) : StringType.INSTANCE;
+            setters[i] = accessor.getSetter(beanClass, field.getName());
+
+            getterNames[i] = accessor.getGetter(beanClass, field.getName()).getMethodName();
+            setterNames[i] = setters[i].getMethodName();
+            optimizable = optimizable && getterNames[i] != null && setterNames[i] != null;
+            i++;
+        }
+
+        this.optimizer = optimizable ? Environment.getBytecodeProvider().getReflectionOptimizer(beanClass, getterNames, setterNames, propertyClasses) : null;
+        this.resultTransformer = new BeanResultTransformer();
+
+        logger.debug("创建{}的查询结果映射,属性{}个,{}字节码访问", beanClass.getName(), size, optimizer == null ? "未使用" : "使用");
+    }
+
+    /**
+     * 获取DTO类型的映射方案,同一类型只创建一次
+     *
+     * @param beanClass DTO类型
+     * @return {@link BeanResultMapping}
+     */
+    public static BeanResultMapping forClass(Class beanClass) {
+        BeanResultMapping mapping = MAPPINGS.get(beanClass);
+        if (mapping == null) {
+            mapping = new BeanResultMapping(beanClass);
+            BeanResultMapping exists = MAPPINGS.putIfAbsent(beanClass, mapping);
+            if (exists != null) {
+                mapping = exists;
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * 获取映射的属性名称,即SQL结果的列别名
+     *
+     * @return String[]
+     */
+    public String[] getPropertyNames() {
+        return propertyNames;
+    }
+
+    /**
+     * 按属性顺序向SQLQuery添加标量列
+     *
+     * @param query SQLQuery
+     */
+    public void addScalars(SQLQuery query) {
+        for (int i = 0; i < propertyNames.length; i++) {
+            query.addScalar(propertyNames[i], types[i]);
+        }
+    }
+
+    /**
+     * 获取将查询结果转换为DTO的ResultTransformer
+     *
+     * @return {@link ResultTransformer}
+     */
+    public ResultTransformer getResultTransformer() {
+        return resultTransformer;
+    }
+
+    /**
+     * 根据一行查询结果创建DTO
+     *
+     * @param tuple   一行查询结果
+     * @param aliases 列别名
+     * @return DTO对象
+     */
+    public Object newBean(Object[] tuple, String[] aliases) {
+        if (!Arrays.equals(propertyNames, aliases)) {
+            //列与属性顺序不一致时(如未通过addScalars添加标量列)按别名逐列写入
+            Object bean = ReflectionUtils.newInstance(beanClass);
+            for (int i = 0; i < aliases.length; i++) {
+                Integer index = propertyIndexes.get(aliases[i]);
+                if (index == null) {
+                    throw new IllegalArgumentException(beanClass.getName() + "中没有属性" + aliases[i]);
+                }
+                setters[index].set(bean, tuple[i], null);
+            }
+            return bean;
+        }
+
+        if (optimizer != null) {
+            Object bean = optimizer.getInstantiationOptimizer().newInstance();
+            optimizer.getAccessOptimizer().setPropertyValues(bean, tuple);
+            return bean;
+        }
+
+        Object bean = ReflectionUtils.newInstance(beanClass);
+        for (int i = 0; i < setters.length; i++) {
+            setters[i].set(bean, tuple[i], null);
+        }
+        return bean;
+    }
+
+    /**
+     * 使用映射方案转换查询结果的ResultTransformer
+     */
+    private class BeanResultTransformer implements ResultTransformer {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object transformTuple(Object[] tuple, String[] aliases) {
+            return newBean(tuple, aliases);
+        }
+
+        @Override
+        public List transformList(List collection) {
+            return collection;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import java.util.List;
+
+/**
+ * 应用事件监听接口.其他节点通过{@link CacheInvalidationBus#publishEvent(org.hibernate.Session, String, java.util.Collection)}
+ * 发布的事件只通知该接口,不清除二级缓存,用于维护只关心特定事件(如新增会员)的进程内数据
+ *
+ * @author vincent
+ */
+public interface CacheEventListener {
+
+    /**
+     * 收到其他节点发布的事件
+     *
+     * @param event  事件名称
+     * @param values 事件内容
+     */
+    public void onEvent(String event, List<String> values);
+
+    /**
+     * 总线断线重连,断开期间的事件可能已丢失
+     */
+    public void onReconnect();
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.StringRepresentableType;
+import org.hibernate.type.Type;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 基于PostgreSQL LISTEN/NOTIFY的跨节点缓存失效总线.
+ * <p/>
+ * {@link BasicHibernateDao}的写操作在当前事务中通过pg_notify发布被修改实体的主键,事务提交后PostgreSQL才会投递消息,
+ * 回滚的修改不会发布.每个节点的监听线程使用独立的数据库连接LISTEN,收到其他节点的消息后清除本节点的二级缓存和查询缓存,
+ * 并通知注册的{@link CacheInvalidationListener}.应用也可以通过{@link #publishEvent(Session, String, Collection)}发布自定义事件,
+ * 事件不清除缓存,只通知注册的{@link CacheEventListener}.
+ * <p/>
+ * 监听连接需要长期占用,dataSource建议使用不经过连接池的DataSource(如Spring的DriverManagerDataSource),
+ * 连接断开后会自动重连,并清除全部缓存以弥补断开期间丢失的消息.
+ *
+ * @author vincent
+ */
+public class CacheInvalidationBus implements InitializingBean, DisposableBean {
+
+    private static Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    /**
+     * 默认的通知频道
+     */
+    public static final String DEFAULT_CHANNEL = "cache_invalidation";
+
+    /**
+     * 默认检查通知的间隔(毫秒)
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 500;
+
+    /**
+     * 清除全部缓存的消息使用的实体名称,用于无法确定修改了哪些表的SQL
+     */
+    public static final String ALL_ENTITIES = "*";
+
+    //自定义事件名称的前缀,与实体名称区分
+    private static final String EVENT_PREFIX = "@";
+
+    //PostgreSQL通知内容最大8000字节,留出节点与实体名称的空间
+    private static final int MAX_PAYLOAD_LENGTH = 7000;
+
+    private static final String SEPARATOR = "|";
+    private static final String ID_SEPARATOR = ",";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final List<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<CacheInvalidationListener>();
+
+    private final List<CacheEventListener> eventListeners = new CopyOnWriteArrayList<CacheEventListener>();
+
+    private SessionFactory sessionFactory;
+
+    private DataSource dataSource;
+
+    private String channel = DEFAULT_CHANNEL;
+
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+    private volatile boolean running;
+
+    private Thread listenerThread;
+
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * 设置监听使用的DataSource,每个节点只占用一个连接
+     *
+     * @param dataSource 监听DataSource
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 设置通知频道,同一数据库上的不同应用需使用不同频道
+     *
+     * @param channel 频道名称
+     */
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 设置检查通知的间隔(毫秒),即其他节点修改后本节点缓存的最大延迟
+     *
+     * @param pollInterval 检查间隔
+     */
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * 设置缓存失效监听
+     *
+     * @param listeners 监听集合
+     */
+    public void setListeners(List<CacheInvalidationListener> listeners) {
+        this.listeners.clear();
+        this.listeners.addAll(listeners);
+    }
+
+    /**
+     * 添加缓存失效监听
+     *
+     * @param listener 监听
+     */
+    public void addListener(CacheInvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 添加事件监听
+     *
+     * @param listener 监听
+     */
+    public void addEventListener(CacheEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    /**
+     * 获取当前节点ID,用于忽略自己发布的消息
+     *
+     * @return String
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.notNull(sessionFactory, "sessionFactory不能为空");
+        Assert.notNull(dataSource, "dataSource不能为空");
+        Assert.isTrue(channel.matches("[a-z_][a-z0-9_]*"), "通知频道只能包含小写字母、数字和下划线");
+        start();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    /**
+     * 启动监听线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                listen();
+            }
+        }, "cache-invalidation-" + channel);
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    /**
+     * 停止监听线程
+     */
+    public synchronized void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+    }
+
+    /**
+     * 在当前事务中发布实体失效消息,事务提交后投递
+     *
+     * @param session    当前Session
+     * @param entityName 实体名称
+     * @param ids        被修改的主键ID,为null时表示该实体的全部记录
+     */
+    public void publish(Session session, final String entityName, final Collection<? extends Serializable> ids) {
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                publish(connection, entityName, ids);
+            }
+        });
+    }
+
+    /**
+     * 在当前事务中发布清除全部缓存的消息,事务提交后投递
+     *
+     * @param session 当前Session
+     */
+    public void publishAll(Session session) {
+        publish(session, ALL_ENTITIES, null);
+    }
+
+    /**
+     * 在指定连接的事务中发布实体失效消息,用于不在当前Session中执行的写入(如StatelessSession)
+     *
+     * @param connection 数据库连接
+     * @param entityName 实体名称
+     * @param ids        被修改的主键ID,为null时表示该实体的全部记录
+     * @throws SQLException
+     */
+    public void publish(Connection connection, String entityName, Collection<? extends Serializable> ids) throws SQLException {
+        String prefix = nodeId + SEPARATOR + entityName + SEPARATOR;
+        if (ids == null) {
+            notify(connection, Collections.singletonList(prefix));
+            return;
+        }
+
+        List<String> tokens = new ArrayList<String>();
+        for (Serializable id : ids) {
+            if (id != null) {
+                tokens.add(id.toString());
+            }
+        }
+        notify(connection, split(prefix, tokens));
+    }
+
+    /**
+     * 在当前事务中发布自定义事件,事务提交后投递给其他节点的{@link CacheEventListener},不清除缓存
+     *
+     * @param session 当前Session
+     * @param event   事件名称
+     * @param values  事件内容,可以包含任意字符
+     */
+    public void publishEvent(Session session, final String event, final Collection<String> values) {
+        session.doWork(new Work() {
+            @Override
+            public void execute(Connection connection) throws SQLException {
+                publishEvent(connection, event, values);
+            }
+        });
+    }
+
+    /**
+     * 在指定连接的事务中发布自定义事件
+     *
+     * @param connection 数据库连接
+     * @param event      事件名称
+     * @param values     事件内容,可以包含任意字符
+     * @throws SQLException
+     */
+    public void publishEvent(Connection connection, String event, Collection<String> values) throws SQLException {
+        Assert.hasText(event, "事件名称不能为空");
+        Assert.isTrue(!event.contains(SEPARATOR), "事件名称不能包含" + SEPARATOR);
+        Assert.notEmpty(values, "事件内容不能为空");
+
+        List<String> tokens = new ArrayList<String>();
+        for (String value : values) {
+            tokens.add(encode(value));
+        }
+        notify(connection, split(nodeId + SEPARATOR + EVENT_PREFIX + event + SEPARATOR, tokens));
+    }
+
+    /**
+     * 将内容按通知的最大长度拆分为多条消息
+     */
+    private List<String> split(String prefix, List<String> tokens) {
+        List<String> payloads = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder(prefix);
+        for (String token : tokens) {
+            if (builder.length() > MAX_PAYLOAD_LENGTH) {
+                payloads.add(builder.substring(0, builder.length() - 1));
+                builder = new StringBuilder(prefix);
+            }
+            builder.append(token).append(ID_SEPARATOR);
+        }
+        if (builder.length() > prefix.length()) {
+            payloads.add(builder.substring(0, builder.length() - 1));
+        }
+        return payloads;
+    }
+
+    /**
+     * 通过pg_notify发送消息
+     */
+    private void notify(Connection connection, List<String> payloads) throws SQLException {
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement statement = connection.prepareStatement("select pg_notify(?, ?)");
+        try {
+            for (String payload : payloads) {
+                statement.setString(1, channel);
+                statement.setString(2, payload);
+                statement.execute();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * 监听线程主循环,连接断开时自动重连
+     */
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            Connection connection = null;
+            try {
+                connection = dataSource.getConnection();
+                connection.setAutoCommit(true);
+                PGConnection pgConnection = connection instanceof PGConnection ? (PGConnection) connection : connection.unwrap(PGConnection.class);
+
+                Statement statement = connection.createStatement();
+                try {
+                    statement.execute("LISTEN " + channel);
+                    logger.info("节点{}开始监听缓存失效频道{}", nodeId, channel);
+
+                    //重连期间可能丢失了消息,清除全部缓存
+                    if (reconnect) {
+                        evictAll();
+                        for (CacheEventListener listener : eventListeners) {
+                            try {
+                                listener.onReconnect();
+                            } catch (RuntimeException e) {
+                                logger.error("事件监听处理重连失败", e);
+                            }
+                        }
+                    }
+
+                    while (running) {
+                        //PostgreSQL驱动只有在与服务器通讯后才会收到通知
+                        statement.execute("SELECT 1");
+                        PGNotification[] notifications = pgConnection.getNotifications();
+                        if (notifications != null) {
+                            for (PGNotification notification : notifications) {
+                                try {
+                                    receive(notification.getParameter());
+                                } catch (RuntimeException e) {
+                                    logger.error("处理缓存失效消息失败:" + notification.getParameter(), e);
+                                }
+                            }
+                        }
+                        Thread.sleep(pollInterval);
+                    }
+                } finally {
+                    statement.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("缓存失效频道" + channel + "监听异常,稍后重连", e);
+                reconnect = true;
+                try {
+                    Thread.sleep(pollInterval * 10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                if (connection != null) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        logger.warn("关闭缓存失效监听连接失败", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一条失效消息,忽略本节点发布的消息
+     *
+     * @param payload 消息内容
+     */
+    protected void receive(String payload) {
+        String[] parts = StringUtils.splitPreserveAllTokens(payload, SEPARATOR, 3);
+        if (parts == null || parts.length != 3) {
+            logger.warn("忽略格式不正确的缓存失效消息:{}", payload);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+
+        String entityName = parts[1];
+        if (entityName.startsWith(EVENT_PREFIX)) {
+            fireEvent(entityName.substring(EVENT_PREFIX.length()), parts[2]);
+            return;
+        }
+        if (ALL_ENTITIES.equals(entityName)) {
+            evictAll();
+            logger.debug("清除其他节点修改的全部缓存");
+            return;
+        }
+        List<Serializable> ids = null;
+
+        EntityPersister persister = ((SessionFactoryImplementor) sessionFactory).getEntityPersister(entityName);
+        Type identifierType = persister.getIdentifierType();
+
+        if (StringUtils.isNotEmpty(parts[2]) && identifierType instanceof StringRepresentableType) {
+            ids = new ArrayList<Serializable>();
+            for (String id : StringUtils.split(parts[2], ID_SEPARATOR)) {
+                ids.add((Serializable) ((StringRepresentableType) identifierType).fromStringValue(id));
+            }
+        }
+
+        evict(entityName, ids);
+    }
+
+    /**
+     * 通知事件监听
+     *
+     * @param event   事件名称
+     * @param content 编码后的事件内容
+     */
+    protected void fireEvent(String event, String content) {
+        List<String> values = new ArrayList<String>();
+        for (String value : StringUtils.splitPreserveAllTokens(content, ID_SEPARATOR)) {
+            values.add(decode(value));
+        }
+        for (CacheEventListener listener : eventListeners) {
+            try {
+                listener.onEvent(event, values);
+            } catch (RuntimeException e) {
+                logger.error("事件监听处理失败:" + event, e);
+            }
+        }
+        logger.debug("收到其他节点的事件{}:{}", event, values);
+    }
+
+    /**
+     * 清除本节点的缓存
+     *
+     * @param entityName 实体名称
+     * @param ids        被修改的主键ID,为null时表示该实体的全部记录
+     */
+    protected void evict(String entityName, List<Serializable> ids) {
+        Cache cache = sessionFactory.getCache();
+
+        if (ids == null) {
+            cache.evictEntityRegion(entityName);
+            cache.evictNaturalIdRegion(entityName);
+        } else {
+            for (Serializable id : ids) {
+                cache.evictEntity(entityName, id);
+            }
+        }
+        //查询缓存依赖本节点记录的表更新时间,无法感知其他节点的修改
+        cache.evictDefaultQueryRegion();
+        cache.evictQueryRegions();
+
+        for (CacheInvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidate(entityName, ids);
+            } catch (RuntimeException e) {
+                logger.error("缓存失效监听处理失败:" + entityName, e);
+            }
+        }
+        logger.debug("清除其他节点修改的缓存{}:{}", entityName, ids);
+    }
+
+    /**
+     * 清除本节点的全部缓存
+     */
+    protected void evictAll() {
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityRegions();
+        cache.evictNaturalIdRegions();
+        cache.evictCollectionRegions();
+        cache.evictDefaultQueryRegion();
+        cache.evictQueryRegions();
+
+        for (String entityName : sessionFactory.getAllClassMetadata().keySet()) {
+            for (CacheInvalidationListener listener : listeners) {
+                try {
+                    listener.onInvalidate(entityName, null);
+                } catch (RuntimeException e) {
+                    logger.error("缓存失效监听处理失败:" + entityName, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 编码事件内容,使其不包含分隔符
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 缓存失效监听接口.其他节点修改实体后,{@link CacheInvalidationBus}在清除本节点Hibernate二级缓存的同时通知该接口,
+ * 用于清除应用自己维护的进程内缓存
+ *
+ * @author vincent
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * 实体已被其他节点修改
+     *
+     * @param entityName 实体名称
+     * @param ids        被修改的主键ID,为null时表示该实体的全部记录
+     */
+    public void onInvalidate(String entityName, List<Serializable> ids);
+}
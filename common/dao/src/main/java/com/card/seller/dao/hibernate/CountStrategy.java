@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+/**
+ * 分页查询总记录数的计算方式
+ *
+ * @author vincent
+ */
+public enum CountStrategy {
+
+    /**
+     * 每次执行count(*)查询精确计算
+     */
+    EXACT,
+
+    /**
+     * 按查询条件缓存count(*)的结果,缓存时间内同一条件的翻页不再重复count,
+     * 缓存时间参考{@link HibernateSupportDao#setCountCacheSeconds(long)}
+     */
+    CACHED,
+
+    /**
+     * 没有查询条件时使用PostgreSQL统计信息(pg_class.reltuples)估算总记录数,SQL分页使用EXPLAIN的估算行数,
+     * 有查询条件或统计信息不可用时退化为{@link #EXACT}
+     */
+    ESTIMATED,
+
+    /**
+     * 在查询分页数据的同一条SQL中使用count(*) over()窗口函数返回总记录数,每页只需一次数据库往返.
+     * 只支持SQL与Criteria(PropertyFilter)分页,Criteria分页返回的是通过投影填充的游离对象;HQL分页退化为{@link #EXACT}
+     */
+    WINDOW,
+
+    /**
+     * 不计算总记录数,只多查询一条记录判断是否存在下一页
+     */
+    HAS_MORE
+}
@@ -17,44 +17,40 @@ package com.card.seller.dao.hibernate;
 
 import com.card.seller.dao.hibernate.restriction.*;
 import org.hibernate.criterion.Criterion;
+import org.springframework.util.Assert;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Hibernate约束捆绑者，帮助HibernateDao对buildCriterion方法创建相对的Criterion对象给Hibernate查询
+ * <p/>
+ * 约束保存在不可变的快照中,通过volatile引用发布.查询时只读取快照,不需要加锁;注册约束时复制快照后整体替换,
+ * 读线程看到的总是完整的旧快照或新快照
  *
  * @author vincent
  */
 public class HibernateRestrictionBuilder {
 
-    private static Map<String, CriterionBuilder> criterionBuilders = new HashMap<String, CriterionBuilder>();
+    private static volatile Map<String, CriterionBuilder> criterionBuilders = Collections.emptyMap();
 
     static {
-
-        CriterionBuilder eqRestriction = new EqRestriction();
-        CriterionBuilder neRestriction = new NeRestriction();
-        CriterionBuilder geRestriction = new GeRestriction();
-        CriterionBuilder gtRestriction = new GtRestriction();
-        CriterionBuilder inRestriction = new InRestriction();
-        CriterionBuilder lLikeRestriction = new LLikeRestriction();
-        CriterionBuilder leRestriction = new LeRestriction();
-        CriterionBuilder likeRestriction = new LikeRestriction();
-        CriterionBuilder ltRestriction = new LtRestriction();
-        CriterionBuilder notInRestriction = new NinRestriction();
-        CriterionBuilder rLikeRestriction = new RLikeRestriction();
-
-        criterionBuilders.put(eqRestriction.getRestrictionName(), eqRestriction);
-        criterionBuilders.put(neRestriction.getRestrictionName(), neRestriction);
-        criterionBuilders.put(geRestriction.getRestrictionName(), geRestriction);
-        criterionBuilders.put(inRestriction.getRestrictionName(), inRestriction);
-        criterionBuilders.put(gtRestriction.getRestrictionName(), gtRestriction);
-        criterionBuilders.put(lLikeRestriction.getRestrictionName(), lLikeRestriction);
-        criterionBuilders.put(leRestriction.getRestrictionName(), leRestriction);
-        criterionBuilders.put(likeRestriction.getRestrictionName(), likeRestriction);
-        criterionBuilders.put(ltRestriction.getRestrictionName(), ltRestriction);
-        criterionBuilders.put(rLikeRestriction.getRestrictionName(), rLikeRestriction);
-        criterionBuilders.put(notInRestriction.getRestrictionName(), notInRestriction);
+        register(new EqRestriction());
+        register(new NeRestriction());
+        register(new GeRestriction());
+        register(new GtRestriction());
+        register(new InRestriction());
+        register(new LLikeRestriction());
+        register(new LeRestriction());
+        register(new LikeRestriction());
+        register(new LtRestriction());
+        register(new NinRestriction());
+        register(new RLikeRestriction());
+        register(new BetweenRestriction());
+        register(new NullRestriction());
+        register(new NotNullRestriction());
+        register(new ArrayContainsRestriction());
     }
 
     /**
@@ -64,13 +60,7 @@ public class HibernateRestrictionBuilder {
      * @return {@link org.hibernate.criterion.Criterion}
      */
     public static Criterion getRestriction(PropertyFilter filter) {
-
-        if (!criterionBuilders.containsKey(filter.getRestrictionName())) {
-            throw new IllegalArgumentException("找不到约束名:" + filter.getRestrictionName());
-        }
-
-        CriterionBuilder criterionBuilder = criterionBuilders.get(filter.getRestrictionName());
-        return criterionBuilder.build(filter);
+        return getCriterionBuilder(filter.getRestrictionName()).build(filter);
     }
 
     /**
@@ -82,17 +72,40 @@ public class HibernateRestrictionBuilder {
      * @return {@link org.hibernate.criterion.Criterion}
      */
     public static Criterion getRestriction(String propertyName, Object value, String restrictionName) {
+        return getCriterionBuilder(restrictionName).build(propertyName, value);
+    }
 
-        if (!criterionBuilders.containsKey(restrictionName)) {
+    /**
+     * 通过约束名称获取条件约束
+     *
+     * @param restrictionName 约束名称
+     * @return {@link CriterionBuilder}
+     */
+    public static CriterionBuilder getCriterionBuilder(String restrictionName) {
+        CriterionBuilder criterionBuilder = criterionBuilders.get(restrictionName);
+        if (criterionBuilder == null) {
             throw new IllegalArgumentException("找不到约束名:" + restrictionName);
         }
+        return criterionBuilder;
+    }
+
+    /**
+     * 注册条件约束,约束名称已存在时替换原来的约束
+     *
+     * @param criterionBuilder 条件约束
+     */
+    public static synchronized void register(CriterionBuilder criterionBuilder) {
+        Assert.notNull(criterionBuilder, "criterionBuilder不能为空");
+        Assert.hasText(criterionBuilder.getRestrictionName(), "约束名称不能为空");
 
-        CriterionBuilder restriction = criterionBuilders.get(restrictionName);
-        return restriction.build(propertyName, value);
+        Map<String, CriterionBuilder> snapshot = new HashMap<String, CriterionBuilder>(criterionBuilders);
+        snapshot.put(criterionBuilder.getRestrictionName(), criterionBuilder);
+        criterionBuilders = Collections.unmodifiableMap(snapshot);
     }
 
     /**
-     * 获取所有的条件约束
+     * 获取所有的条件约束,返回的是不可修改的快照,修改会抛出UnsupportedOperationException,
+     * 添加约束请使用{@link #register(CriterionBuilder)}
      *
      * @return Map
      */
@@ -101,12 +114,13 @@ public class HibernateRestrictionBuilder {
     }
 
     /**
-     * 设置所有的条件约束
+     * 设置所有的条件约束,会复制一份作为新的快照,之后对参数的修改不会影响已设置的约束
      *
      * @param criterionBuilders 条件约束
      */
-    public static void setCriterionBuilders(Map<String, CriterionBuilder> criterionBuilders) {
-        HibernateRestrictionBuilder.criterionBuilders = criterionBuilders;
+    public static synchronized void setCriterionBuilders(Map<String, CriterionBuilder> criterionBuilders) {
+        Assert.notNull(criterionBuilders, "criterionBuilders不能为空");
+        HibernateRestrictionBuilder.criterionBuilders = Collections.unmodifiableMap(new HashMap<String, CriterionBuilder>(criterionBuilders));
     }
 
 
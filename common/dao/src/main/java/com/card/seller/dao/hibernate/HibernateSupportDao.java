@@ -15,22 +15,45 @@
  */
 package com.card.seller.dao.hibernate;
 
+import com.card.seller.domain.ConvertUtils;
 import com.card.seller.domain.ReflectionUtils;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.*;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.engine.spi.TypedValue;
 import org.hibernate.internal.AbstractQueryImpl;
 import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.hibernate.transform.ResultTransformer;
+import org.hibernate.transform.Transformers;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.LongType;
+import org.hibernate.type.Type;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * {@link BasicHibernateDao}基础扩展类。包含对{@link PropertyFilter}的支持。或其他查询的支持
@@ -42,6 +65,37 @@ import java.util.Map;
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibernateDao<T, PK> {
 
+    //keyset分页时HQL中游标参数名的前缀
+    private static final String KEYSET_PARAMETER_PREFIX = "__k";
+
+    private static final Pattern WHERE_PATTERN = Pattern.compile("\\swhere\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern GROUP_BY_PATTERN = Pattern.compile("\\sgroup\\s+by\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\sorder\\s+by\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NESTED_SELECT_PATTERN = Pattern.compile("\\(\\s*select\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SIMPLE_FROM_PATTERN = Pattern.compile("^\\s*(select\\s+\\w+\\s+)?from\\s+([\\w.]+)(\\s+(as\\s+)?\\w+)?\\s*$", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 默认count结果的缓存时间(秒)
+     */
+    public static final long DEFAULT_COUNT_CACHE_SECONDS = 60;
+
+    /**
+     * count结果最多缓存的查询条件个数
+     */
+    public static final long COUNT_CACHE_SIZE = 1000;
+
+    //CountStrategy.CACHED时按查询条件缓存的count结果
+    private Cache<String, Long> countCache = createCountCache(DEFAULT_COUNT_CACHE_SECONDS);
+
+    //将属性过滤器编译为按形状缓存的HQL
+    private final PropertyFilterCompiler filterCompiler = new PropertyFilterCompiler(entityClass.getName());
+
+    //是否将属性过滤器编译为HQL查询,无法编译时仍使用Criteria.默认关闭,需要时按DAO开启
+    private boolean compileFilters = false;
+
+    //根据实体的LikeIndex注解将RLIKE改写为可以使用索引的范围查询
+    private final LikeIndexSupport likeIndexSupport = new LikeIndexSupport(entityClass);
+
     public HibernateSupportDao() {
 
     }
@@ -50,6 +104,51 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
         super(entityClass);
     }
 
+    /**
+     * 设置{@link CountStrategy#CACHED}时count结果的缓存时间,已缓存的结果会被清空
+     *
+     * @param seconds 缓存时间(秒)
+     */
+    public void setCountCacheSeconds(long seconds) {
+        Assert.isTrue(seconds > 0, "count缓存时间必须大于0");
+        this.countCache = createCountCache(seconds);
+    }
+
+    /**
+     * 清空{@link CountStrategy#CACHED}缓存的count结果,批量写入后需要立即看到准确总数时调用
+     */
+    public void invalidateCountCache() {
+        countCache.invalidateAll();
+    }
+
+    /**
+     * 设置是否将属性过滤器编译为HQL查询.开启后{@link #findByPropertyFilter(java.util.List, org.hibernate.criterion.Order...)}
+     * 和{@link #findPage(PageRequest, java.util.List)}使用{@link PropertyFilterCompiler}生成的HQL,
+     * 存在无法编译的约束、指定了Order、使用{@link CountStrategy#WINDOW}或存在{@link LikeIndexSupport}改写的约束时仍使用Criteria.
+     * 默认关闭
+     *
+     * @param compileFilters 是否编译属性过滤器
+     */
+    public void setCompileFilters(boolean compileFilters) {
+        this.compileFilters = compileFilters;
+    }
+
+    /**
+     * 获取属性过滤器编译器,可以查看HQL形状缓存的命中统计
+     *
+     * @return {@link PropertyFilterCompiler}
+     */
+    public PropertyFilterCompiler getFilterCompiler() {
+        return filterCompiler;
+    }
+
+    private static Cache<String, Long> createCountCache(long seconds) {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(seconds, TimeUnit.SECONDS)
+                .maximumSize(COUNT_CACHE_SIZE)
+                .build();
+    }
+
     /**
      * 执行count查询获得本次Criteria查询所能获得的对象总数.
      *
@@ -124,7 +223,8 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
         if (filter == null) {
             return null;
         }
-        return HibernateRestrictionBuilder.getRestriction(filter);
+        Criterion criterion = likeIndexSupport.createCriterion(filter);
+        return criterion != null ? criterion : HibernateRestrictionBuilder.getRestriction(filter);
     }
 
     /**
@@ -135,9 +235,367 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
      */
     public List<T> findByPropertyFilter(List<PropertyFilter> filters, Order... orders) {
 
+        if (compileFilters && orders.length == 0 && !likeIndexSupport.isAccelerated(filters)) {
+            PropertyFilterCompiler.CompiledFilter compiled = filterCompiler.compile(filters);
+            if (compiled != null) {
+                return createQuery(compiled.getQueryString(), compiled.getValues()).list();
+            }
+        }
         return createCriteria(filters, orders).list();
     }
 
+    /**
+     * 根据{@link PropertyFilter}流式查询全部,每次只从数据库获取{@link #getFetchSize()}条记录,
+     * 每处理{@link #getBatchSize()}条记录flush并clear一次session,堆内存占用不随记录数增长
+     *
+     * @param filters  属性过滤器
+     * @param callback 行处理回调
+     * @param orders   排序对象，不需要排序，可以不传
+     * @return 处理的记录数
+     */
+    public int scrollByPropertyFilter(List<PropertyFilter> filters, ScrollCallback<T> callback, Order... orders) {
+        Criteria criteria = createCriteria(filters);
+        setOrderToCriteria(criteria, orders);
+        return scroll(criteria, callback);
+    }
+
+    /**
+     * 根据{@link PropertyFilter}批量删除对象.先查询符合条件的主键,再按主键执行批量删除,
+     * 参考{@link #deleteAll(java.util.List)}
+     *
+     * @param filters 属性过滤器,不能为空,避免误删全表
+     * @return 影响的记录数
+     */
+    public int deleteByPropertyFilter(List<PropertyFilter> filters) {
+        Assert.notEmpty(filters, "批量删除的属性过滤器不能为空");
+        Criteria criteria = createCriteria(filters);
+        criteria.setProjection(Projections.id());
+        List<PK> ids = criteria.list();
+        return deleteAll(ids);
+    }
+
+    /**
+     * 根据{@link PropertyFilter}批量更新对象.过滤条件与更新值转换为一条SQL update语句执行,不会加载实体.
+     * 只支持实体自身属性的过滤条件,不会递增版本号,当前Session中已加载的对象也不会同步更新
+     * <p/>
+     * <pre>
+     * Map&lt;String, Object&gt; values = new HashMap&lt;String, Object&gt;();
+     * values.put("balance", UpdateExpression.increment(new BigDecimal(10)));
+     * memberDao.updateByPropertyFilter(filters, values);
+     * </pre>
+     *
+     * @param filters 属性过滤器,不能为空,避免误更新全表
+     * @param values  属性名到新值的Map,值可以是{@link UpdateExpression},其他值按{@link UpdateExpression#value(Object)}处理
+     * @return 影响的记录数
+     */
+    public int updateByPropertyFilter(List<PropertyFilter> filters, Map<String, ?> values) {
+        BulkUpdate update = createBulkUpdate(filters, values);
+
+        SQLQuery query = getSession().createSQLQuery(update.getUpdateSql());
+        query.addSynchronizedEntityClass(entityClass);
+        update.setParameters(query, null);
+
+        int result = query.executeUpdate();
+        publishInvalidation(null);
+        return result;
+    }
+
+    /**
+     * 根据{@link PropertyFilter}按主键范围分批更新对象,每批在独立的StatelessSession事务中执行并提交,锁只在一批内持有,
+     * 适用于大表的维护任务.各批不在同一个事务中,中途失败时已提交的批次不会回滚.主键必须为数字类型
+     *
+     * @param filters   属性过滤器,不能为空,避免误更新全表
+     * @param values    属性名到新值的Map,参考{@link #updateByPropertyFilter(java.util.List, java.util.Map)}
+     * @param chunkSize 每批的主键范围大小
+     * @return 影响的记录数
+     */
+    public int updateByPropertyFilter(List<PropertyFilter> filters, Map<String, ?> values, long chunkSize) {
+        Assert.isTrue(chunkSize > 0, "chunkSize必须大于0");
+        BulkUpdate update = createBulkUpdate(filters, values);
+
+        int result = 0;
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            SQLQuery rangeQuery = session.createSQLQuery(update.getRangeSql());
+            update.setWhereParameters(rangeQuery, 0);
+            Object[] range = (Object[]) rangeQuery.uniqueResult();
+            if (range == null || range[0] == null) {
+                return 0;
+            }
+
+            long min = ((Number) range[0]).longValue();
+            long max = ((Number) range[1]).longValue();
+            for (long from = min; from <= max; from += chunkSize) {
+                Transaction transaction = session.beginTransaction();
+                try {
+                    SQLQuery query = session.createSQLQuery(update.getChunkUpdateSql());
+                    update.setParameters(query, new long[]{from, from + chunkSize});
+                    result += query.executeUpdate();
+                    transaction.commit();
+                } catch (RuntimeException e) {
+                    transaction.rollback();
+                    throw e;
+                }
+            }
+
+            sessionFactory.getCache().evictEntityRegion(entityClass);
+            sessionFactory.getCache().evictQueryRegions();
+
+            CacheInvalidationBus bus = getCacheInvalidationBus();
+            if (bus != null) {
+                Transaction transaction = session.beginTransaction();
+                try {
+                    bus.publish(((SessionImplementor) session).connection(), getEntityName(), null);
+                    transaction.commit();
+                } catch (SQLException e) {
+                    transaction.rollback();
+                    throw new HibernateException("发布缓存失效消息失败", e);
+                }
+            }
+        } finally {
+            session.close();
+        }
+        return result;
+    }
+
+    /**
+     * 将属性过滤器与更新值转换为SQL update语句,过滤条件通过Hibernate的Criteria翻译为SQL
+     *
+     * @param filters 属性过滤器
+     * @param values  属性名到新值的Map
+     * @return BulkUpdate
+     */
+    private BulkUpdate createBulkUpdate(List<PropertyFilter> filters, Map<String, ?> values) {
+        Assert.notEmpty(filters, "批量更新的属性过滤器不能为空");
+        Assert.notEmpty(values, "批量更新的属性不能为空");
+
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) sessionFactory;
+        AbstractEntityPersister persister = (AbstractEntityPersister) factory.getEntityPersister(getEntityName());
+        BulkUpdate update = new BulkUpdate(persister.getTableName(), CriteriaQueryTranslator.ROOT_SQL_ALIAS + "." + persister.getIdentifierColumnNames()[0]);
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            String propertyName = entry.getKey();
+            String[] columns = persister.getPropertyColumnNames(propertyName);
+            Assert.isTrue(columns.length == 1, "属性" + propertyName + "不是单列属性,不能批量更新");
+
+            Type propertyType = persister.getPropertyType(propertyName);
+            UpdateExpression expression = entry.getValue() instanceof UpdateExpression ? (UpdateExpression) entry.getValue() : UpdateExpression.value(entry.getValue());
+            update.addSet(columns[0] + " = " + expression.toSqlString(columns[0]));
+
+            Object[] expressionValues = expression.getValues();
+            Type[] expressionTypes = expression.getTypes();
+            for (int i = 0; i < expressionValues.length; i++) {
+                Object value = expressionValues[i];
+                Type type = expressionTypes[i];
+                if (type == null && expression.isPropertyTyped()) {
+                    type = propertyType;
+                    if (!type.getReturnedClass().isInstance(value)) {
+                        value = ConvertUtils.convertToObject(value.toString(), type.getReturnedClass());
+                    }
+                } else if (type == null) {
+                    type = factory.getTypeResolver().heuristicType(value.getClass().getName());
+                }
+                update.addSetParameter(value, type);
+            }
+        }
+
+        CriteriaImpl criteria = new CriteriaImpl(getEntityName(), null);
+        for (PropertyFilter filter : filters) {
+            criteria.add(createCriterion(filter));
+        }
+        CriteriaQueryTranslator translator = new CriteriaQueryTranslator(factory, criteria, getEntityName(), CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+        QueryParameters parameters = translator.getQueryParameters();
+        update.setWhere(translator.getWhereCondition(), parameters.getPositionalParameterValues(), parameters.getPositionalParameterTypes());
+
+        return update;
+    }
+
+    /**
+     * 根据{@link PropertyFilter}判断是否存在符合条件的记录.只查询常量1并限制1条记录,不会构建实体
+     *
+     * @param filters 属性过滤器
+     * @return boolean
+     */
+    public boolean exists(List<PropertyFilter> filters) {
+        return exists(createCriteria(filters));
+    }
+
+    /**
+     * 通过criterion数组判断是否存在符合条件的记录
+     *
+     * @param criterions criterion数组
+     * @return boolean
+     */
+    public boolean exists(Criterion... criterions) {
+        return exists(createCriteria(criterions));
+    }
+
+    /**
+     * 通过orm实体属性名称判断是否存在符合条件的记录
+     *
+     * @param propertyName orm实体属性名称
+     * @param value        值
+     * @return boolean
+     */
+    public boolean existsByProperty(String propertyName, Object value) {
+        return existsByProperty(propertyName, value, RestrictionNames.EQ);
+    }
+
+    /**
+     * 通过orm实体属性名称判断是否存在符合条件的记录
+     *
+     * @param propertyName    orm实体属性名称
+     * @param value           值
+     * @param restrictionName 约束名称,参考{@link CriterionBuilder}的实现类
+     * @return boolean
+     */
+    public boolean existsByProperty(String propertyName, Object value, String restrictionName) {
+        return exists(HibernateRestrictionBuilder.getRestriction(propertyName, value, restrictionName));
+    }
+
+    /**
+     * 通过HQL判断是否存在符合条件的记录,select部分替换为常量1并限制1条记录
+     *
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     * @param values            值
+     * @return boolean
+     */
+    public boolean existsByQuery(String queryOrNamedQuery, Object... values) {
+        Query query = createQuery(getQueryMetadata(queryOrNamedQuery).getExistsQuery(), values);
+        return !query.setMaxResults(1).list().isEmpty();
+    }
+
+    /**
+     * 通过HQL判断是否存在符合条件的记录,select部分替换为常量1并限制1条记录
+     *
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     * @param values            命名参数,按名称绑定
+     * @return boolean
+     */
+    public boolean existsByQuery(String queryOrNamedQuery, Map<String, ?> values) {
+        Query query = createQuery(getQueryMetadata(queryOrNamedQuery).getExistsQuery(), values);
+        return !query.setMaxResults(1).list().isEmpty();
+    }
+
+    /**
+     * 根据{@link PropertyFilter}计算符合条件的记录数,最多计算到limit条,用于"超过N条"一类的判断,
+     * 只查询主键,不会构建实体
+     *
+     * @param limit   最多计算的记录数
+     * @param filters 属性过滤器
+     * @return 记录数,不超过limit
+     */
+    public int countUpTo(int limit, List<PropertyFilter> filters) {
+        return countUpTo(createCriteria(filters), limit);
+    }
+
+    /**
+     * 通过criterion数组计算符合条件的记录数,最多计算到limit条
+     *
+     * @param limit      最多计算的记录数
+     * @param criterions criterion数组
+     * @return 记录数,不超过limit
+     */
+    public int countUpTo(int limit, Criterion... criterions) {
+        return countUpTo(createCriteria(criterions), limit);
+    }
+
+    /**
+     * 通过HQL计算符合条件的记录数,最多计算到limit条
+     *
+     * @param limit             最多计算的记录数
+     * @param queryOrNamedQuery hql 或者Hibernate的NamedQuery
+     * @param values            值
+     * @return 记录数,不超过limit
+     */
+    public int countUpToByQuery(int limit, String queryOrNamedQuery, Object... values) {
+        Assert.isTrue(limit > 0, "limit必须大于0");
+        Query query = createQuery(getQueryMetadata(queryOrNamedQuery).getExistsQuery(), values);
+        return query.setMaxResults(limit).list().size();
+    }
+
+    /**
+     * 判断Criteria是否有结果,会替换Criteria的Projection
+     *
+     * @param c Criteria对象
+     * @return boolean
+     */
+    protected boolean exists(Criteria c) {
+        c.setProjection(Projections.sqlProjection("1 as exists_", new String[]{"exists_"}, new Type[]{IntegerType.INSTANCE}));
+        return c.setMaxResults(1).uniqueResult() != null;
+    }
+
+    /**
+     * 计算Criteria的结果数,最多计算到limit条,会替换Criteria的Projection
+     *
+     * @param c     Criteria对象
+     * @param limit 最多计算的记录数
+     * @return int
+     */
+    protected int countUpTo(Criteria c, int limit) {
+        Assert.isTrue(limit > 0, "limit必须大于0");
+        c.setProjection(Projections.id());
+        return c.setMaxResults(limit).list().size();
+    }
+
+    /**
+     * 根据{@link PropertyFilter}执行聚合查询,每行结果为结果别名到值的Map
+     *
+     * @param filters     属性过滤器
+     * @param aggregation 聚合与分组
+     * @return List
+     */
+    public List<Map<String, Object>> aggregate(List<PropertyFilter> filters, Aggregation aggregation) {
+        Criteria criteria = createAggregateCriteria(filters, aggregation);
+        criteria.setResultTransformer(Transformers.ALIAS_TO_ENTITY_MAP);
+        return criteria.list();
+    }
+
+    /**
+     * 根据{@link PropertyFilter}执行聚合查询,每行结果按结果别名写入rowClass的同名属性,属性类型需要与结果类型一致
+     *
+     * @param filters     属性过滤器
+     * @param aggregation 聚合与分组
+     * @param rowClass    结果行类型
+     * @return List
+     */
+    public <X> List<X> aggregate(List<PropertyFilter> filters, Aggregation aggregation, Class<X> rowClass) {
+        Assert.notNull(rowClass, "rowClass不能为空");
+        Criteria criteria = createAggregateCriteria(filters, aggregation);
+        criteria.setResultTransformer(BeanResultMapping.forClass(rowClass).getResultTransformer());
+        return criteria.list();
+    }
+
+    /**
+     * 根据{@link PropertyFilter}执行没有分组的聚合查询,如会员余额合计
+     *
+     * @param filters     属性过滤器
+     * @param aggregation 聚合
+     * @return 结果别名到值的Map
+     */
+    public Map<String, Object> aggregateUnique(List<PropertyFilter> filters, Aggregation aggregation) {
+        Criteria criteria = createAggregateCriteria(filters, aggregation);
+        criteria.setResultTransformer(Transformers.ALIAS_TO_ENTITY_MAP);
+        return (Map<String, Object>) criteria.uniqueResult();
+    }
+
+    /**
+     * 根据{@link PropertyFilter}和聚合描述创建Criteria
+     *
+     * @param filters     属性过滤器
+     * @param aggregation 聚合与分组
+     * @return {@link org.hibernate.Criteria}
+     */
+    protected Criteria createAggregateCriteria(List<PropertyFilter> filters, Aggregation aggregation) {
+        Assert.notNull(aggregation, "aggregation不能为空");
+        Criteria criteria = createCriteria(filters);
+        criteria.setProjection(aggregation.getProjections());
+        for (Order order : aggregation.getOrders()) {
+            criteria.addOrder(order);
+        }
+        return criteria;
+    }
+
     /**
      * 通过orm实体属性名称查询全部
      *
@@ -230,6 +688,13 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
      * @return {@link Page}
      */
     public Page<T> findPage(PageRequest request, List<PropertyFilter> filters) {
+        if (compileFilters && request != null && request.getCountStrategy() != CountStrategy.WINDOW
+                && !likeIndexSupport.isAccelerated(filters)) {
+            PropertyFilterCompiler.CompiledFilter compiled = filterCompiler.compile(filters);
+            if (compiled != null) {
+                return findPage(request, compiled.getQueryString(), compiled.getValues());
+            }
+        }
         Criteria c = createCriteria(filters);
         return findPage(request, c);
     }
@@ -249,19 +714,206 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
             return page;
         }
 
+        if (request.isCountTotal() && request.getCountStrategy() == CountStrategy.WINDOW && !request.isKeyset()) {
+            return findWindowPage(request, c);
+        }
+
         if (request.isCountTotal()) {
-            long totalCount = countCriteriaResult(c);
-            page.setTotalItems(totalCount);
+            final Criteria criteria = c;
+            CriteriaImpl impl = (CriteriaImpl) c;
+
+            boolean unfiltered = entityClass.getName().equals(impl.getEntityOrClassName())
+                    && !impl.iterateExpressionEntries().hasNext() && !impl.iterateSubcriteria().hasNext();
+
+            setTotalToPage(page, impl.toString(), unfiltered, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return countCriteriaResult(criteria);
+                }
+            });
         }
 
         setPageRequestToCriteria(c, request);
 
         List result = c.list();
-        page.setResult(result);
+        setResultToPage(page, result);
+
+        return page;
+    }
+
+    /**
+     * 使用count(*) over()窗口函数在一条SQL中查询分页数据与总记录数.
+     * <p/>
+     * 通过投影查询实体的主键和非关联属性,再填充到新创建的实体对象中,返回的对象不受Session管理,关联属性为null,
+     * 只适用于列表展示等只读场景.
+     *
+     * @param request 分页请求参数
+     * @param c       Criteria对象,不能已设置投影
+     * @return {@link Page}
+     */
+    protected Page<T> findWindowPage(PageRequest request, Criteria c) {
+        Page<T> page = new Page<T>(request);
+
+        CriteriaImpl impl = (CriteriaImpl) c;
+        Assert.isNull(impl.getProjection(), "count(*) over()分页不支持已设置投影的Criteria");
+
+        final ClassMetadata metadata = sessionFactory.getClassMetadata(entityClass);
+        final List<String> propertyNames = new ArrayList<String>();
+
+        ProjectionList projections = Projections.projectionList();
+        projections.add(Projections.id());
+        for (String propertyName : metadata.getPropertyNames()) {
+            if (!metadata.getPropertyType(propertyName).isAssociationType()) {
+                projections.add(Projections.property(propertyName));
+                propertyNames.add(propertyName);
+            }
+        }
+        projections.add(Projections.sqlProjection("count(*) over() as " + WindowCountTransformer.TOTAL_ALIAS,
+                new String[]{WindowCountTransformer.TOTAL_ALIAS}, new Type[]{LongType.INSTANCE}));
+
+        //投影不设置别名,避免Hibernate把同名属性的查询条件解析为投影列
+        final SessionImplementor session = (SessionImplementor) getSession();
+        WindowCountTransformer transformer = new WindowCountTransformer(new ResultTransformer() {
+            @Override
+            public Object transformTuple(Object[] tuple, String[] aliases) {
+                Object entity = metadata.instantiate((Serializable) tuple[0], session);
+                for (int i = 0; i < propertyNames.size(); i++) {
+                    metadata.setPropertyValue(entity, propertyNames.get(i), tuple[i + 1]);
+                }
+                return entity;
+            }
+
+            @Override
+            public List transformList(List collection) {
+                return collection;
+            }
+        });
+
+        c.setProjection(projections);
+        c.setResultTransformer(transformer);
+        setPageRequestToCriteria(c, request);
+
+        List result = c.list();
+        setResultToPage(page, result);
+
+        long totalCount = transformer.getTotalItems();
+        if (totalCount < 0) {
+            //当前页没有记录时窗口函数无法返回总数,越界的页需要重新count
+            if (request.getOffset() > 0) {
+                c.setFirstResult(0);
+                totalCount = countCriteriaResult(c);
+            } else {
+                totalCount = 0;
+            }
+        }
+        page.setTotalItems(totalCount);
 
         return page;
     }
 
+    /**
+     * 通过分页参数与SQL语句获取分页对象,支持{@link PageRequest#getCountStrategy()}的所有总记录数计算方式,不支持keyset分页.
+     * <p/>
+     * 使用{@link CountStrategy#WINDOW}时,SQL会被包装为子查询并通过count(*) over()在同一条SQL中返回总记录数,
+     * 此时分页参数的排序字段需为SQL结果中的列名.
+     *
+     * @param request              分页请求参数
+     * @param queryOrNamedSQLQuery sql 或者 NamedSQLQuery
+     * @param transferClass        结果对象类型,参考{@link #setQueryTransform(Class, org.hibernate.SQLQuery)},为null时返回Map
+     * @param values               命名参数,按名称绑定.
+     * @return {@link Page}
+     */
+    public <X> Page<X> findPageBySQLQuery(PageRequest request, String queryOrNamedSQLQuery, Class transferClass, final Map<String, Object> values) {
+        Page<X> page = new Page<X>(request);
+
+        if (request == null) {
+            return page;
+        }
+
+        Assert.isTrue(!request.isKeyset(), "SQL分页不支持keyset分页");
+        Assert.isTrue(request.getPageSize() > 0, "分页大小必须大于0");
+
+        final String sql = getSQLQueryString(queryOrNamedSQLQuery);
+        String orderSql = request.isOrderBySetted() ? " order by " + request.getOrderSortString() : "";
+
+        if (request.isCountTotal() && request.getCountStrategy() == CountStrategy.WINDOW) {
+            String windowSql = String.format("select %s.*, count(*) over() as %s from (%s) %s%s",
+                    DEFAULT_ALIAS, WindowCountTransformer.TOTAL_ALIAS, sql, DEFAULT_ALIAS, orderSql);
+
+            SQLQuery query = createSQLQuery(windowSql, null, values);
+            WindowCountTransformer transformer = null;
+
+            if (transferClass != null) {
+                setQueryTransform(transferClass, query);
+                query.addScalar(WindowCountTransformer.TOTAL_ALIAS, LongType.INSTANCE);
+                transformer = new WindowCountTransformer(BeanResultMapping.forClass(transferClass).getResultTransformer());
+            } else {
+                transformer = new WindowCountTransformer(Transformers.ALIAS_TO_ENTITY_MAP);
+            }
+
+            query.setResultTransformer(transformer);
+            query.setFirstResult(request.getOffset());
+            query.setMaxResults(request.getPageSize());
+
+            List result = query.list();
+            page.setResult(result);
+
+            long totalCount = transformer.getTotalItems();
+            if (totalCount < 0) {
+                //当前页没有记录时窗口函数无法返回总数,越界的页需要重新count
+                totalCount = request.getOffset() > 0 ? countSqlResult(sql, values) : 0;
+            }
+            page.setTotalItems(totalCount);
+
+            return page;
+        }
+
+        if (request.isCountTotal()) {
+            setTotalToPage(page, "sql:" + sql + values, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return estimateSqlResult(sql, values);
+                }
+            }, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return countSqlResult(sql, values);
+                }
+            });
+        }
+
+        SQLQuery query = createSQLQuery(sql + orderSql, null, values);
+        if (transferClass != null) {
+            setQueryTransform(transferClass, query);
+        } else {
+            query.setResultTransformer(Transformers.ALIAS_TO_ENTITY_MAP);
+        }
+
+        query.setFirstResult(request.getOffset());
+        if (request.getCountStrategy() == CountStrategy.HAS_MORE) {
+            //多查询一条记录用于判断是否存在下一页
+            query.setMaxResults(request.getPageSize() + 1);
+        } else {
+            query.setMaxResults(request.getPageSize());
+        }
+
+        setResultToPage(page, query.list());
+
+        return page;
+    }
+
+    /**
+     * 获取SQL语句,为NamedSQLQuery时返回其定义的SQL
+     *
+     * @param queryOrNamedSQLQuery sql 或者 NamedSQLQuery
+     * @return String
+     */
+    private String getSQLQueryString(String queryOrNamedSQLQuery) {
+        Assert.hasText(queryOrNamedSQLQuery, "queryOrNamedSQLQuery不能为空");
+
+        return getQueryMetadata(queryOrNamedSQLQuery).getQueryString();
+    }
+
     /**
      * 通过分页参数与HQL语句获取分页对象
      *
@@ -309,38 +961,391 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
 
         AbstractQueryImpl impl = (AbstractQueryImpl) query;
 
+        if (request.isKeyset()) {
+            return findKeysetPage(request, impl);
+        }
+
         String queryString = setPageRequestToHql(impl.getQueryString(), request);
         ReflectionUtils.setFieldValue(impl, "queryString", queryString);
 
         if (request.isCountTotal()) {
-            long totalCount = 0;
+            Map<String, Object> namedValues = new HashMap<String, Object>();
 
             if (impl.hasNamedParameters()) {
                 Map<String, TypedValue> map = ReflectionUtils.getFieldValue(impl, "namedParameters");
-                Map<String, Object> values = new HashMap<String, Object>();
 
                 for (Map.Entry<String, TypedValue> entry : map.entrySet()) {
-                    values.put(entry.getKey(), entry.getValue().getValue());
+                    namedValues.put(entry.getKey(), entry.getValue().getValue());
+                }
+                //setParameterList绑定的参数(如in子句)保存在namedParameterLists中
+                Map<String, TypedValue> lists = ReflectionUtils.getFieldValue(impl, "namedParameterLists");
+                for (Map.Entry<String, TypedValue> entry : lists.entrySet()) {
+                    namedValues.put(entry.getKey(), entry.getValue().getValue());
                 }
+            }
+
+            List<Object> values = ReflectionUtils.invokeGetterMethod(impl, "values");
+            setHqlTotalToPage(page, impl.getQueryString(), namedValues, values);
+        }
+
+        impl.setFirstResult(request.getOffset());
+        if (request.getCountStrategy() == CountStrategy.HAS_MORE) {
+            //多查询一条记录用于判断是否存在下一页
+            impl.setMaxResults(request.getPageSize() + 1);
+        } else {
+            impl.setMaxResults(request.getPageSize());
+        }
+
+        List result = impl.list();
+        setResultToPage(page, result);
+
+        return page;
+    }
+
+    /**
+     * 使用keyset分页执行Query.由于需要在HQL中追加游标条件,会根据原Query的HQL和参数重新创建Query,
+     * 查询结果必须是当前实体,游标值从最后一个实体中读取.
+     * 原Query的缓存、锁等设置不会保留.count查询不包含游标条件.
+     *
+     * @param request 分页请求参数对象
+     * @param impl    Hibernate Query
+     * @return {@link Page}
+     */
+    protected <X> Page<X> findKeysetPage(PageRequest request, AbstractQueryImpl impl) {
+        Page<X> page = new Page<X>(request);
+
+        String hql = impl.getQueryString();
+        Assert.isTrue(!ORDER_BY_PATTERN.matcher(hql).find(), "keyset分页的HQL不能包含order by,请通过PageRequest设置排序");
+        //游标条件按第一个where或group by插入,子查询中的where或group by会导致插入位置错误
+        Assert.isTrue(!NESTED_SELECT_PATTERN.matcher(hql).find(), "keyset分页的HQL不能包含子查询");
+
+        KeysetCursor keysetCursor = createKeysetCursor(request);
+        Object[] cursorValues = request.getCursor() == null ? null : keysetCursor.decode(request.getCursor());
+
+        Query query = getSession().createQuery(setKeysetToHql(hql, keysetCursor.getSorts(), cursorValues != null));
+        Type[] returnTypes = query.getReturnTypes();
+        Assert.isTrue(returnTypes.length == 1 && returnTypes[0].isEntityType() && entityClass.isAssignableFrom(returnTypes[0].getReturnedClass()),
+                "keyset分页的HQL只能查询" + entityClass.getSimpleName() + "实体,不支持投影或DTO");
+
+        Map<String, Object> namedValues = new HashMap<String, Object>();
+        Map<String, TypedValue> namedParameters = ReflectionUtils.getFieldValue(impl, "namedParameters");
+        for (Map.Entry<String, TypedValue> entry : namedParameters.entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue().getValue(), entry.getValue().getType());
+            namedValues.put(entry.getKey(), entry.getValue().getValue());
+        }
+        Map<String, TypedValue> namedParameterLists = ReflectionUtils.getFieldValue(impl, "namedParameterLists");
+        for (Map.Entry<String, TypedValue> entry : namedParameterLists.entrySet()) {
+            query.setParameterList(entry.getKey(), (Collection) entry.getValue().getValue(), entry.getValue().getType());
+            namedValues.put(entry.getKey(), entry.getValue().getValue());
+        }
+        List<Object> values = ReflectionUtils.invokeGetterMethod(impl, "values");
+        List<Type> types = ReflectionUtils.invokeGetterMethod(impl, "types");
+        for (int i = 0; i < values.size(); i++) {
+            query.setParameter(i, values.get(i), types.get(i));
+        }
+
+        if (request.isCountTotal()) {
+            setHqlTotalToPage(page, hql, namedValues, values);
+        }
+
+        if (cursorValues != null) {
+            for (int i = 0; i < cursorValues.length; i++) {
+                query.setParameter(KEYSET_PARAMETER_PREFIX + i, cursorValues[i]);
+            }
+        }
+
+        //多查询一条记录用于判断是否存在下一页
+        query.setMaxResults(request.getPageSize() + 1);
+
+        setResultToPage(page, query.list());
+
+        return page;
+    }
+
+    /**
+     * 根据分页参数的{@link CountStrategy}计算HQL查询的总记录数并设置到分页对象, 辅助函数.
+     *
+     * @param page        分页对象
+     * @param hql         HQL语句
+     * @param namedValues 命名参数
+     * @param values      按顺序绑定的参数,不为空时忽略命名参数
+     */
+    protected void setHqlTotalToPage(Page page, final String hql, final Map<String, Object> namedValues, final List<Object> values) {
+        Matcher matcher = SIMPLE_FROM_PATTERN.matcher(hql);
+        boolean unfiltered = matcher.matches() && values.isEmpty() && namedValues.isEmpty()
+                && (entityClass.getName().equals(matcher.group(2)) || entityClass.getSimpleName().equals(matcher.group(2)));
+
+        setTotalToPage(page, hql + namedValues + values, unfiltered, new Callable<Long>() {
+            @Override
+            public Long call() {
+                if (values.isEmpty()) {
+                    return countHqlResult(hql, namedValues);
+                }
+                return countHqlResult(hql, values.toArray());
+            }
+        });
+    }
+
+    /**
+     * 根据分页参数的{@link CountStrategy}计算总记录数并设置到分页对象, 辅助函数.
+     *
+     * @param page       分页对象
+     * @param cacheKey   查询条件的缓存key,需包含查询语句与参数值
+     * @param unfiltered 是否为没有任何条件的实体全表查询,只有全表查询才能使用统计信息估算
+     * @param exactCount 精确count查询
+     */
+    protected void setTotalToPage(Page page, String cacheKey, boolean unfiltered, Callable<Long> exactCount) {
+        Callable<Long> estimatedCount = null;
+
+        if (unfiltered) {
+            estimatedCount = new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return estimateEntityCount();
+                }
+            };
+        }
+
+        setTotalToPage(page, cacheKey, estimatedCount, exactCount);
+    }
+
+    /**
+     * 根据分页参数的{@link CountStrategy}计算总记录数并设置到分页对象, 辅助函数.
+     *
+     * @param page           分页对象
+     * @param cacheKey       查询条件的缓存key,需包含查询语句与参数值
+     * @param estimatedCount 估算count,为null或返回负数时使用精确count
+     * @param exactCount     精确count查询
+     */
+    protected void setTotalToPage(Page page, String cacheKey, Callable<Long> estimatedCount, Callable<Long> exactCount) {
+        try {
+            switch (page.getCountStrategy()) {
+                case HAS_MORE:
+                    return;
+                case ESTIMATED:
+                    long estimated = estimatedCount == null ? -1 : estimatedCount.call();
+                    if (estimated >= 0) {
+                        page.setTotalItems(estimated);
+                        page.setTotalExact(false);
+                        return;
+                    }
+                    break;
+                case CACHED:
+                    page.setTotalItems(countCache.get(entityClass.getName() + ":" + cacheKey, exactCount));
+                    return;
+                default:
+                    break;
+            }
+            page.setTotalItems(exactCount.call());
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * 根据分页参数创建keyset分页游标.排序字段中没有主键时会追加主键作为最后一个排序字段,保证排序唯一.
+     * 排序字段必须是实体自身不能为null的属性.
+     *
+     * @param request 分页请求参数
+     * @return {@link KeysetCursor}
+     */
+    protected KeysetCursor createKeysetCursor(PageRequest request) {
+        ClassMetadata metadata = sessionFactory.getClassMetadata(entityClass);
+        String idName = metadata.getIdentifierPropertyName();
+
+        List<PageRequest.Sort> sorts = new ArrayList<PageRequest.Sort>();
+        List<Type> types = new ArrayList<Type>();
+        boolean hasId = false;
+        String dir = PageRequest.Sort.ASC;
+
+        for (PageRequest.Sort sort : request.getSort()) {
+            String property = StringUtils.trim(sort.getProperty());
+            dir = StringUtils.trim(sort.getDir());
+            sorts.add(new PageRequest.Sort(property, dir));
+
+            if (property.equals(idName)) {
+                hasId = true;
+                types.add(metadata.getIdentifierType());
+            } else {
+                int index = ArrayUtils.indexOf(metadata.getPropertyNames(), property);
+                Assert.isTrue(index >= 0, "keyset分页的排序字段" + property + "必须是" + metadata.getEntityName() + "的属性");
+                //游标条件无法比较null值,可以为null的字段会导致翻页时漏掉记录
+                Assert.isTrue(!metadata.getPropertyNullability()[index], "keyset分页的排序字段" + property + "可以为null,不能用于keyset分页");
+                types.add(metadata.getPropertyTypes()[index]);
+            }
+        }
 
-                totalCount = countHqlResult(impl.getQueryString(), values);
+        if (!hasId) {
+            sorts.add(new PageRequest.Sort(idName, dir));
+            types.add(metadata.getIdentifierType());
+        }
+
+        return new KeysetCursor(sorts, types);
+    }
+
+    /**
+     * 创建keyset分页的游标条件.排序方向一致且数据库支持行值比较时为(s1, s2) > (v1, v2),
+     * 否则为s1 >= v1 and ((s1 > v1) or (s1 = v1 and s2 > v2) or ...),降序字段使用小于.
+     * 两种形式数据库都可以从索引中定位到游标的位置开始扫描,翻到后面的页与第一页的开销相同
+     *
+     * @param sorts  排序字段
+     * @param values 上一页最后一条记录的排序字段值
+     * @return {@link org.hibernate.criterion.Criterion}
+     */
+    protected Criterion createKeysetCriterion(List<PageRequest.Sort> sorts, Object[] values) {
+        if (isRowValueKeyset(sorts)) {
+            return new RowValueCriterion(sorts, values);
+        }
 
+        Disjunction disjunction = Restrictions.disjunction();
+
+        for (int i = 0; i < sorts.size(); i++) {
+            Conjunction conjunction = Restrictions.conjunction();
+            for (int j = 0; j < i; j++) {
+                conjunction.add(Restrictions.eq(sorts.get(j).getProperty(), values[j]));
+            }
+
+            PageRequest.Sort sort = sorts.get(i);
+            if (isDesc(sort)) {
+                conjunction.add(Restrictions.lt(sort.getProperty(), values[i]));
             } else {
-                List<Object> values = ReflectionUtils.invokeGetterMethod(impl, "values");
-                totalCount = countHqlResult(impl.getQueryString(), values.toArray());
+                conjunction.add(Restrictions.gt(sort.getProperty(), values[i]));
+            }
+            disjunction.add(conjunction);
+        }
 
+        if (sorts.size() == 1) {
+            return disjunction;
+        }
+
+        //冗余的第一个排序字段的范围条件,使数据库可以从索引中的游标位置开始扫描
+        PageRequest.Sort first = sorts.get(0);
+        Criterion bound = isDesc(first) ? Restrictions.le(first.getProperty(), values[0]) : Restrictions.ge(first.getProperty(), values[0]);
+        return Restrictions.and(bound, disjunction);
+    }
+
+    /**
+     * keyset分页的游标条件是否使用行值比较:多个排序字段,排序方向一致且数据库支持(s1, s2) > (v1, v2)语法
+     *
+     * @param sorts 排序字段
+     * @return boolean
+     */
+    protected boolean isRowValueKeyset(List<PageRequest.Sort> sorts) {
+        if (sorts.size() < 2 || !((SessionFactoryImplementor) sessionFactory).getDialect().supportsRowValueConstructorSyntax()) {
+            return false;
+        }
+        for (PageRequest.Sort sort : sorts) {
+            if (isDesc(sort) != isDesc(sorts.get(0))) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            page.setTotalItems(totalCount);
+    private static boolean isDesc(PageRequest.Sort sort) {
+        return PageRequest.Sort.DESC.equals(sort.getDir());
+    }
+
+    /**
+     * 在HQL中添加keyset分页的游标条件与排序, 辅助函数.游标条件的形式与{@link #createKeysetCriterion(List, Object[])}一致,
+     * 游标参数按顺序命名为:__k0,:__k1...
+     *
+     * @param hql       HQL语句,不能包含order by和子查询
+     * @param sorts     排序字段
+     * @param hasCursor 是否添加游标条件
+     * @return String
+     */
+    protected String setKeysetToHql(String hql, List<PageRequest.Sort> sorts, boolean hasCursor) {
+        StringBuilder builder = new StringBuilder();
+
+        if (hasCursor) {
+            StringBuilder predicate = new StringBuilder("(");
+            if (isRowValueKeyset(sorts)) {
+                StringBuilder parameters = new StringBuilder();
+                predicate.append("(");
+                for (int i = 0; i < sorts.size(); i++) {
+                    predicate.append(i > 0 ? ", " : "").append(sorts.get(i).getProperty());
+                    parameters.append(i > 0 ? ", :" : ":").append(KEYSET_PARAMETER_PREFIX).append(i);
+                }
+                predicate.append(") ").append(isDesc(sorts.get(0)) ? "<" : ">").append(" (").append(parameters).append(")");
+            } else {
+                if (sorts.size() > 1) {
+                    //冗余的第一个排序字段的范围条件,使数据库可以从索引中的游标位置开始扫描
+                    PageRequest.Sort first = sorts.get(0);
+                    predicate.append(String.format("%s %s :%s0 and (", first.getProperty(), isDesc(first) ? "<=" : ">=", KEYSET_PARAMETER_PREFIX));
+                }
+                for (int i = 0; i < sorts.size(); i++) {
+                    if (i > 0) {
+                        predicate.append(" or ");
+                    }
+                    predicate.append("(");
+                    for (int j = 0; j < i; j++) {
+                        predicate.append(String.format("%s = :%s%d and ", sorts.get(j).getProperty(), KEYSET_PARAMETER_PREFIX, j));
+                    }
+                    PageRequest.Sort sort = sorts.get(i);
+                    String operator = isDesc(sort) ? "<" : ">";
+                    predicate.append(String.format("%s %s :%s%d)", sort.getProperty(), operator, KEYSET_PARAMETER_PREFIX, i));
+                }
+                if (sorts.size() > 1) {
+                    predicate.append(")");
+                }
+            }
+            predicate.append(")");
+
+            Matcher groupBy = GROUP_BY_PATTERN.matcher(hql);
+            int end = groupBy.find() ? groupBy.start() : hql.length();
+            Matcher where = WHERE_PATTERN.matcher(hql);
+
+            if (where.find() && where.start() < end) {
+                builder.append(hql.substring(0, where.end())).append("(").append(hql.substring(where.end(), end))
+                        .append(") and ").append(predicate);
+            } else {
+                builder.append(hql.substring(0, end)).append(" where ").append(predicate);
+            }
+            builder.append(hql.substring(end));
+        } else {
+            builder.append(hql);
         }
 
-        impl.setFirstResult(request.getOffset());
-        impl.setMaxResults(request.getPageSize());
+        builder.append(" order by");
+        for (PageRequest.Sort sort : sorts) {
+            builder.append(String.format(" %s %s,", sort.getProperty(), sort.getDir()));
+        }
+        builder.deleteCharAt(builder.length() - 1);
 
-        List result = impl.list();
-        page.setResult(result);
+        return builder.toString();
+    }
 
-        return page;
+    /**
+     * 设置查询结果到分页对象, 辅助函数.keyset分页或{@link CountStrategy#HAS_MORE}时会多查询一条记录,
+     * 存在该记录时移除,并在keyset分页时生成下一页的游标.
+     *
+     * @param page   分页对象
+     * @param result 查询结果
+     */
+    protected void setResultToPage(Page page, List result) {
+        boolean fetchMore = page.isKeyset() || page.getCountStrategy() == CountStrategy.HAS_MORE;
+
+        if (fetchMore && result.size() > page.getPageSize()) {
+            result = new ArrayList(result.subList(0, page.getPageSize()));
+            page.setHasMore(true);
+        }
+
+        if (page.isKeyset() && page.isHasMore()) {
+            KeysetCursor keysetCursor = createKeysetCursor(page);
+            Object last = result.get(result.size() - 1);
+            Assert.isInstanceOf(entityClass, last, "keyset分页的查询结果必须是实体");
+            Object[] values = new Object[keysetCursor.getSorts().size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ReflectionUtils.invokeGetterMethod(last, keysetCursor.getSorts().get(i).getProperty());
+            }
+
+            page.setNextCursor(keysetCursor.encode(values));
+        }
+
+        page.setResult(result);
     }
 
     /**
@@ -375,8 +1380,32 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
     protected Criteria setPageRequestToCriteria(Criteria c, PageRequest pageRequest) {
         Assert.isTrue(pageRequest.getPageSize() > 0, "分页大小必须大于0");
 
+        if (pageRequest.isKeyset()) {
+            //游标值从最后一个实体中读取
+            Assert.isTrue(!(c instanceof CriteriaImpl) || ((CriteriaImpl) c).getProjection() == null, "keyset分页不支持已设置投影的Criteria");
+            KeysetCursor keysetCursor = createKeysetCursor(pageRequest);
+            if (pageRequest.getCursor() != null) {
+                c.add(createKeysetCriterion(keysetCursor.getSorts(), keysetCursor.decode(pageRequest.getCursor())));
+            }
+            for (PageRequest.Sort sort : keysetCursor.getSorts()) {
+                if (PageRequest.Sort.DESC.equals(sort.getDir())) {
+                    c.addOrder(Order.desc(sort.getProperty()));
+                } else {
+                    c.addOrder(Order.asc(sort.getProperty()));
+                }
+            }
+            //多查询一条记录用于判断是否存在下一页
+            c.setMaxResults(pageRequest.getPageSize() + 1);
+            return c;
+        }
+
         c.setFirstResult(pageRequest.getOffset());
-        c.setMaxResults(pageRequest.getPageSize());
+        if (pageRequest.getCountStrategy() == CountStrategy.HAS_MORE) {
+            //多查询一条记录用于判断是否存在下一页
+            c.setMaxResults(pageRequest.getPageSize() + 1);
+        } else {
+            c.setMaxResults(pageRequest.getPageSize());
+        }
 
         if (pageRequest.isOrderBySetted()) {
             for (PageRequest.Sort sort : pageRequest.getSort()) {
@@ -393,4 +1422,121 @@ public class HibernateSupportDao<T, PK extends Serializable> extends BasicHibern
         return c;
     }
 
-}
\ No newline at end of file
+
+    /**
+     * keyset分页的行值比较条件:(c1, c2) > (?, ?),降序时使用小于
+     */
+    private static class RowValueCriterion implements Criterion {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<PageRequest.Sort> sorts;
+        private final Object[] values;
+
+        private RowValueCriterion(List<PageRequest.Sort> sorts, Object[] values) {
+            this.sorts = sorts;
+            this.values = values;
+        }
+
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            List<String> columns = new ArrayList<String>();
+            List<String> parameters = new ArrayList<String>();
+            for (PageRequest.Sort sort : sorts) {
+                String[] propertyColumns = criteriaQuery.findColumns(sort.getProperty(), criteria);
+                if (propertyColumns.length != 1) {
+                    throw new HibernateException("keyset分页的排序字段只支持单列属性:" + sort.getProperty());
+                }
+                columns.add(propertyColumns[0]);
+                parameters.add("?");
+            }
+            String operator = isDesc(sorts.get(0)) ? " < " : " > ";
+            return "(" + StringUtils.join(columns, ", ") + ")" + operator + "(" + StringUtils.join(parameters, ", ") + ")";
+        }
+
+        public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            TypedValue[] typedValues = new TypedValue[sorts.size()];
+            for (int i = 0; i < typedValues.length; i++) {
+                typedValues[i] = criteriaQuery.getTypedValue(criteria, sorts.get(i).getProperty(), values[i]);
+            }
+            return typedValues;
+        }
+
+        @Override
+        public String toString() {
+            List<String> properties = new ArrayList<String>();
+            for (PageRequest.Sort sort : sorts) {
+                properties.add(sort.getProperty());
+            }
+            return "(" + StringUtils.join(properties, ", ") + ")" + (isDesc(sorts.get(0)) ? " < " : " > ") + Arrays.toString(values);
+        }
+    }
+
+    /**
+     * 批量更新的SQL语句及参数.表使用{@link CriteriaQueryTranslator#ROOT_SQL_ALIAS}作为别名,与Criteria翻译出的过滤条件一致
+     */
+    private static class BulkUpdate {
+
+        private final String tableName;
+        private final String idColumn;
+        private final List<String> sets = new ArrayList<String>();
+        private final List<Object> setValues = new ArrayList<Object>();
+        private final List<Type> setTypes = new ArrayList<Type>();
+        private String where;
+        private Object[] whereValues;
+        private Type[] whereTypes;
+
+        private BulkUpdate(String tableName, String idColumn) {
+            this.tableName = tableName;
+            this.idColumn = idColumn;
+        }
+
+        private void addSet(String set) {
+            sets.add(set);
+        }
+
+        private void addSetParameter(Object value, Type type) {
+            setValues.add(value);
+            setTypes.add(type);
+        }
+
+        private void setWhere(String where, Object[] whereValues, Type[] whereTypes) {
+            this.where = where;
+            this.whereValues = whereValues;
+            this.whereTypes = whereTypes;
+        }
+
+        private String getUpdateSql() {
+            return "update " + tableName + " " + CriteriaQueryTranslator.ROOT_SQL_ALIAS + " set " + StringUtils.join(sets, ", ") + " where " + where;
+        }
+
+        private String getChunkUpdateSql() {
+            return getUpdateSql() + " and " + idColumn + " >= ? and " + idColumn + " < ?";
+        }
+
+        private String getRangeSql() {
+            return "select min(" + idColumn + "), max(" + idColumn + ") from " + tableName + " " + CriteriaQueryTranslator.ROOT_SQL_ALIAS + " where " + where;
+        }
+
+        /**
+         * 依次绑定set参数,where参数和主键范围参数
+         */
+        private void setParameters(SQLQuery query, long[] idRange) {
+            int position = 0;
+            for (int i = 0; i < setValues.size(); i++) {
+                query.setParameter(position++, setValues.get(i), setTypes.get(i));
+            }
+            position = setWhereParameters(query, position);
+            if (idRange != null) {
+                query.setParameter(position++, idRange[0], LongType.INSTANCE);
+                query.setParameter(position, idRange[1], LongType.INSTANCE);
+            }
+        }
+
+        private int setWhereParameters(SQLQuery query, int position) {
+            for (int i = 0; i < whereValues.length; i++) {
+                query.setParameter(position++, whereValues[i], whereTypes[i]);
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Restrictions;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * in子句工具类.将任意长度的值列表按固定大小分片,并把每个分片补齐到固定的几档长度(1,2,4,8...直到分片大小),
+ * 让不同长度的列表只产生有限几种SQL,Hibernate与PostgreSQL的执行计划缓存可以复用.
+ * 补齐时重复最后一个值,in/not in的结果不受影响.
+ * <p/>
+ * 所有分片仍在同一条语句中,PostgreSQL驱动一条语句最多绑定32767个参数,因此补齐后的参数个数不能超过
+ * {@link #MAX_PARAMETER_COUNT},超过时抛出IllegalArgumentException.更长的主键列表应使用
+ * {@link BasicHibernateDao#get(java.util.Collection)}分多条语句查询,或改用子查询
+ *
+ * @author vincent
+ */
+public class InClauseSupport {
+
+    /**
+     * 一个in/not in约束补齐后最多包含的参数个数,为同一语句中的其他条件留出余量
+     */
+    public static final int MAX_PARAMETER_COUNT = 30000;
+
+    private InClauseSupport() {
+
+    }
+
+    /**
+     * 获取长度为size的分片补齐后的长度,为不小于size的2的幂,且不超过chunkSize
+     *
+     * @param size      分片实际长度
+     * @param chunkSize 分片大小
+     * @return int
+     */
+    public static int getBucketSize(int size, int chunkSize) {
+        Assert.isTrue(chunkSize > 0, "分片大小必须大于0");
+        if (size >= chunkSize) {
+            return chunkSize;
+        }
+        int bucket = 1;
+        while (bucket < size) {
+            bucket <<= 1;
+        }
+        return Math.min(bucket, chunkSize);
+    }
+
+    /**
+     * 获取长度为size的值列表分片补齐后的参数总个数
+     *
+     * @param size      值列表长度
+     * @param chunkSize 分片大小
+     * @return int
+     */
+    public static int getParameterCount(int size, int chunkSize) {
+        Assert.isTrue(chunkSize > 0, "分片大小必须大于0");
+        int remainder = size % chunkSize;
+        return size - remainder + (remainder == 0 ? 0 : getBucketSize(remainder, chunkSize));
+    }
+
+    /**
+     * 校验长度为size的值列表放在同一条语句中时补齐后的参数个数不超过{@link #MAX_PARAMETER_COUNT}
+     *
+     * @param size      值列表长度
+     * @param chunkSize 分片大小
+     */
+    public static void checkParameterCount(int size, int chunkSize) {
+        int count = getParameterCount(size, chunkSize);
+        if (count > MAX_PARAMETER_COUNT) {
+            throw new IllegalArgumentException("in约束有" + size + "个值,补齐后" + count + "个参数,超过单条语句的上限"
+                    + MAX_PARAMETER_COUNT + ",请分批查询或改用子查询");
+        }
+    }
+
+    /**
+     * 将值列表按chunkSize分片,每个分片补齐到{@link #getBucketSize(int, int)}的长度
+     *
+     * @param values    值列表
+     * @param chunkSize 分片大小
+     * @return List
+     */
+    public static <X> List<List<X>> partition(Collection<X> values, int chunkSize) {
+        Assert.notEmpty(values, "值列表不能为空");
+        Assert.isTrue(chunkSize > 0, "分片大小必须大于0");
+
+        List<X> list = new ArrayList<X>(values);
+        List<List<X>> chunks = new ArrayList<List<X>>((list.size() + chunkSize - 1) / chunkSize);
+
+        for (int from = 0; from < list.size(); from += chunkSize) {
+            List<X> chunk = new ArrayList<X>(list.subList(from, Math.min(from + chunkSize, list.size())));
+            X last = chunk.get(chunk.size() - 1);
+            for (int i = chunk.size(), bucket = getBucketSize(chunk.size(), chunkSize); i < bucket; i++) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * 创建分片的in约束,多个分片时以or连接,补齐后的参数个数不能超过{@link #MAX_PARAMETER_COUNT}
+     *
+     * @param propertyName 属性名
+     * @param values       值
+     * @param chunkSize    分片大小
+     * @return {@link org.hibernate.criterion.Criterion}
+     */
+    public static Criterion in(String propertyName, Object[] values, int chunkSize) {
+        checkParameterCount(values.length, chunkSize);
+        List<List<Object>> chunks = partition(Arrays.asList(values), chunkSize);
+        if (chunks.size() == 1) {
+            return Restrictions.in(propertyName, chunks.get(0));
+        }
+        Disjunction disjunction = Restrictions.disjunction();
+        for (List<Object> chunk : chunks) {
+            disjunction.add(Restrictions.in(propertyName, chunk));
+        }
+        return disjunction;
+    }
+
+    /**
+     * 创建分片的not in约束,多个分片时以and连接,补齐后的参数个数不能超过{@link #MAX_PARAMETER_COUNT}
+     *
+     * @param propertyName 属性名
+     * @param values       值
+     * @param chunkSize    分片大小
+     * @return {@link org.hibernate.criterion.Criterion}
+     */
+    public static Criterion notIn(String propertyName, Object[] values, int chunkSize) {
+        checkParameterCount(values.length, chunkSize);
+        List<List<Object>> chunks = partition(Arrays.asList(values), chunkSize);
+        if (chunks.size() == 1) {
+            return Restrictions.not(Restrictions.in(propertyName, chunks.get(0)));
+        }
+        Conjunction conjunction = Restrictions.conjunction();
+        for (List<Object> chunk : chunks) {
+            conjunction.add(Restrictions.not(Restrictions.in(propertyName, chunk)));
+        }
+        return conjunction;
+    }
+}
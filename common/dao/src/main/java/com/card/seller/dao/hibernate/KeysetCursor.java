@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import org.hibernate.type.StringRepresentableType;
+import org.hibernate.type.Type;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * keyset(seek)分页游标.游标保存排序字段和上一页最后一条记录的排序字段值,经Base64编码后对调用方不透明.
+ * <p/>
+ * 排序字段值通过Hibernate类型的字符串形式保存,解码时再转换回对应类型,不使用java序列化,
+ * 因此客户端篡改游标最多只会得到参数不合法的异常.
+ *
+ * @author vincent
+ */
+public class KeysetCursor {
+
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private static final char LENGTH_SEPARATOR = ':';
+
+    private final List<PageRequest.Sort> sorts;
+    private final List<StringRepresentableType<?>> types;
+
+    /**
+     * keyset分页游标
+     *
+     * @param sorts 排序字段,最后一个字段必须唯一(通常为主键)
+     * @param types 排序字段对应的Hibernate类型
+     */
+    public KeysetCursor(List<PageRequest.Sort> sorts, List<Type> types) {
+        Assert.notEmpty(sorts, "keyset分页的排序字段不能为空");
+        Assert.isTrue(sorts.size() == types.size(), "keyset分页的排序字段与类型个数不相等");
+
+        this.sorts = sorts;
+        this.types = new ArrayList<StringRepresentableType<?>>();
+
+        for (int i = 0; i < types.size(); i++) {
+            Type type = types.get(i);
+            if (!(type instanceof StringRepresentableType)) {
+                throw new IllegalArgumentException("keyset分页不支持排序字段" + sorts.get(i).getProperty() + "的类型" + type.getName());
+            }
+            this.types.add((StringRepresentableType<?>) type);
+        }
+    }
+
+    /**
+     * 获取排序字段
+     *
+     * @return List
+     */
+    public List<PageRequest.Sort> getSorts() {
+        return sorts;
+    }
+
+    /**
+     * 将最后一条记录的排序字段值编码为游标
+     *
+     * @param values 排序字段值,与排序字段一一对应
+     * @return String
+     */
+    @SuppressWarnings("unchecked")
+    public String encode(Object[] values) {
+        Assert.isTrue(values.length == sorts.size(), "keyset分页的排序字段与值个数不相等");
+
+        StringBuilder builder = new StringBuilder();
+        append(builder, getSignature());
+
+        for (int i = 0; i < values.length; i++) {
+            Assert.notNull(values[i], "keyset分页的排序字段" + sorts.get(i).getProperty() + "值不能为null");
+            append(builder, ((StringRepresentableType<Object>) types.get(i)).toString(values[i]));
+        }
+
+        return ENCODING.encode(builder.toString().getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * 将游标解码为排序字段值
+     *
+     * @param cursor 游标
+     * @return 排序字段值,与排序字段一一对应
+     */
+    public Object[] decode(String cursor) {
+        List<String> tokens = null;
+        try {
+            tokens = split(new String(ENCODING.decode(cursor), Charsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("分页游标" + cursor + "不是合法值", e);
+        }
+
+        if (tokens.size() != sorts.size() + 1 || !getSignature().equals(tokens.get(0))) {
+            throw new IllegalArgumentException("分页游标" + cursor + "与排序参数不匹配");
+        }
+
+        Object[] values = new Object[sorts.size()];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                values[i] = types.get(i).fromStringValue(tokens.get(i + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("分页游标" + cursor + "不是合法值", e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 获取排序签名,用于校验游标与当前排序参数是否一致
+     */
+    private String getSignature() {
+        StringBuilder builder = new StringBuilder();
+        for (PageRequest.Sort sort : sorts) {
+            builder.append(sort.getProperty()).append(' ').append(sort.getDir()).append(',');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 以"长度:内容"的形式追加一个值,值中可以包含任意字符
+     */
+    private void append(StringBuilder builder, String value) {
+        builder.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+    }
+
+    /**
+     * 拆分"长度:内容"形式的值
+     */
+    private List<String> split(String text) {
+        List<String> result = new ArrayList<String>();
+        int index = 0;
+        while (index < text.length()) {
+            int separator = text.indexOf(LENGTH_SEPARATOR, index);
+            if (separator < 0) {
+                throw new IllegalArgumentException("游标格式不正确");
+            }
+            int end = separator + 1 + Integer.parseInt(text.substring(index, separator));
+            if (end > text.length() || end <= separator) {
+                throw new IllegalArgumentException("游标格式不正确");
+            }
+            result.add(text.substring(separator + 1, end));
+            index = end;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.dao.hibernate.restriction.RLikeRestriction;
+import com.card.seller.domain.LikeIndex;
+import com.card.seller.domain.ReflectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Junction;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.TypedValue;
+
+import java.util.*;
+
+/**
+ * 根据实体的{@link LikeIndex}注解加速模糊查询.
+ * <p/>
+ * like的值是绑定参数,PostgreSQL使用通用执行计划时无法把'abc%'当作前缀使用btree索引.对注解中声明的属性,
+ * RLIKE约束被改写为text_pattern_ops索引支持的范围查询:col ~>=~ 'abc' and col ~<~ 'abd',与like 'abc%'的结果一致.
+ * 值中包含%、_通配符或\转义符,以及无法计算上界时保持原来的like.LIKE和LLIKE约束不改写,由pg_trgm的gin索引加速
+ *
+ * @author vincent
+ */
+public class LikeIndexSupport {
+
+    private final Set<String> propertyNames;
+
+    /**
+     * 构造方法
+     *
+     * @param entityClass 实体类型
+     */
+    public LikeIndexSupport(Class<?> entityClass) {
+        LikeIndex likeIndex = ReflectionUtils.getAnnotation(entityClass, LikeIndex.class);
+        if (likeIndex == null) {
+            this.propertyNames = Collections.emptySet();
+        } else {
+            this.propertyNames = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(likeIndex.value())));
+        }
+    }
+
+    /**
+     * 属性是否建立了模糊查询索引
+     *
+     * @param propertyName 属性名称
+     * @return boolean
+     */
+    public boolean isIndexed(String propertyName) {
+        return propertyNames.contains(propertyName);
+    }
+
+    /**
+     * 属性过滤器是否会被改写为范围查询
+     *
+     * @param filter 属性过滤器
+     * @return boolean
+     */
+    public boolean isAccelerated(PropertyFilter filter) {
+        if (filter == null || propertyNames.isEmpty() || filter.getFieldType() != String.class) {
+            return false;
+        }
+        if (!RestrictionNames.RLIKE.equals(filter.getRestrictionName())
+                || HibernateRestrictionBuilder.getCriterionBuilder(filter.getRestrictionName()).getClass() != RLikeRestriction.class) {
+            return false;
+        }
+        for (String propertyName : filter.getPropertyNames()) {
+            if (!isIndexed(propertyName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 属性过滤器列表中是否存在会被改写的过滤器
+     *
+     * @param filters 属性过滤器
+     * @return boolean
+     */
+    public boolean isAccelerated(List<PropertyFilter> filters) {
+        if (filters == null || propertyNames.isEmpty()) {
+            return false;
+        }
+        for (PropertyFilter filter : filters) {
+            if (isAccelerated(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将RLIKE过滤器改写为范围查询,值的and/or和多属性的or与{@link RLikeRestriction}一致
+     *
+     * @param filter 属性过滤器
+     * @return {@link Criterion},不能改写时返回null
+     */
+    public Criterion createCriterion(PropertyFilter filter) {
+        if (!isAccelerated(filter)) {
+            return null;
+        }
+
+        RLikeRestriction restriction = (RLikeRestriction) HibernateRestrictionBuilder.getCriterionBuilder(filter.getRestrictionName());
+        MatchValue matchValue = restriction.getMatchValue(filter.getMatchValue(), filter.getFieldType());
+        Junction criterion = matchValue.hasOrOperate() ? Restrictions.disjunction() : Restrictions.conjunction();
+
+        for (Object value : matchValue.getValues()) {
+            String prefix = value.toString();
+            String upperBound = nextPrefix(prefix);
+            List<Criterion> disjunction = new ArrayList<Criterion>();
+            for (String propertyName : filter.getPropertyNames()) {
+                if (upperBound == null || StringUtils.containsAny(prefix, '%', '_', '\\')) {
+                    disjunction.add(restriction.build(propertyName, prefix));
+                } else {
+                    disjunction.add(new PrefixRangeCriterion(propertyName, prefix, upperBound));
+                }
+            }
+            criterion.add(disjunction.size() == 1 ? disjunction.get(0) : Restrictions.or(disjunction.toArray(new Criterion[disjunction.size()])));
+        }
+        return criterion;
+    }
+
+    /**
+     * 获取前缀的上界,即大于所有以prefix开头的字符串的最小字符串.按码点比较,与UTF-8字节顺序一致
+     *
+     * @param prefix 前缀
+     * @return 上界,无法计算时返回null
+     */
+    public static String nextPrefix(String prefix) {
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        int last = prefix.length() - 1;
+        char c = prefix.charAt(last);
+        //代理字符的顺序与码点顺序不一致,最后一个字符或加1后的字符是代理字符时不做改写
+        if (c == Character.MAX_VALUE || Character.isSurrogate(c) || Character.isSurrogate((char) (c + 1))) {
+            return null;
+        }
+        return prefix.substring(0, last) + (char) (c + 1);
+    }
+
+    /**
+     * 前缀范围条件:col ~>=~ ? and col ~<~ ?
+     */
+    private static class PrefixRangeCriterion implements Criterion {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String propertyName;
+        private final String lowerBound;
+        private final String upperBound;
+
+        private PrefixRangeCriterion(String propertyName, String lowerBound, String upperBound) {
+            this.propertyName = propertyName;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            String[] columns = criteriaQuery.findColumns(propertyName, criteria);
+            if (columns.length != 1) {
+                throw new HibernateException("前缀范围查询只支持单列属性:" + propertyName);
+            }
+            return "(" + columns[0] + " ~>=~ ? and " + columns[0] + " ~<~ ?)";
+        }
+
+        public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            return new TypedValue[]{
+                    criteriaQuery.getTypedValue(criteria, propertyName, lowerBound),
+                    criteriaQuery.getTypedValue(criteria, propertyName, upperBound)
+            };
+        }
+
+        @Override
+        public String toString() {
+            return propertyName + " like " + lowerBound + "%";
+        }
+    }
+}
@@ -30,6 +30,9 @@ public class Page<T> extends PageRequest implements Serializable {
 
     protected List<T> result = null;
     protected long totalItems = -1;
+    protected boolean totalExact = true;
+    protected boolean hasMore = false;
+    protected String nextCursor = null;
 
     public Page() {
     }
@@ -38,8 +41,11 @@ public class Page<T> extends PageRequest implements Serializable {
         this.pageNo = request.getPageNo();
         this.pageSize = request.getPageSize();
         this.countTotal = request.isCountTotal();
+        this.countStrategy = request.getCountStrategy();
         this.orderBy = request.getOrderBy();
         this.orderDir = request.getOrderDir();
+        this.keyset = request.isKeyset();
+        this.cursor = request.getCursor();
     }
 
     /**
@@ -70,6 +76,48 @@ public class Page<T> extends PageRequest implements Serializable {
         this.totalItems = totalItems;
     }
 
+    /**
+     * 总记录数是否精确, 使用{@link CountStrategy#ESTIMATED}估算时为false.
+     */
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    /**
+     * 设置总记录数是否精确.
+     */
+    public void setTotalExact(final boolean totalExact) {
+        this.totalExact = totalExact;
+    }
+
+    /**
+     * 查询时是否发现当前页之后还有记录, 只在keyset分页或{@link CountStrategy#HAS_MORE}时有效.
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    /**
+     * 设置当前页之后是否还有记录.
+     */
+    public void setHasMore(final boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * 获得keyset分页下一页的游标,没有下一页时为null.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * 设置keyset分页下一页的游标.
+     */
+    public void setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     /**
      * 根据pageSize与totalItems计算总页数.
      */
@@ -82,6 +130,9 @@ public class Page<T> extends PageRequest implements Serializable {
      * 是否还有下一页.
      */
     public boolean hasNextPage() {
+        if (isKeyset() || getCountStrategy() == CountStrategy.HAS_MORE) {
+            return hasMore;
+        }
         return (getPageNo() + 1 <= getTotalPages());
     }
 
@@ -61,6 +61,21 @@ public class PageRequest implements java.io.Serializable {
      */
     protected boolean countTotal = true;
 
+    /**
+     * 总记录数的计算方式
+     */
+    protected CountStrategy countStrategy = CountStrategy.EXACT;
+
+    /**
+     * 是否使用keyset(seek)分页
+     */
+    protected boolean keyset = false;
+
+    /**
+     * keyset分页时上一页返回的游标,为null时查询第一页
+     */
+    protected String cursor = null;
+
     /**
      * 构造方法
      */
@@ -200,10 +215,61 @@ public class PageRequest implements java.io.Serializable {
         this.countTotal = countTotal;
     }
 
+    /**
+     * 获得总记录数的计算方式, 默认为{@link CountStrategy#EXACT}.
+     */
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    /**
+     * 设置总记录数的计算方式, 为null时使用{@link CountStrategy#EXACT}.
+     */
+    public void setCountStrategy(CountStrategy countStrategy) {
+        this.countStrategy = countStrategy == null ? CountStrategy.EXACT : countStrategy;
+    }
+
+    /**
+     * 是否使用keyset(seek)分页.keyset分页不使用offset,而是根据上一页最后一条记录的排序字段值定位,
+     * 深度翻页与查询第一页的代价相同,但只能按游标顺序逐页翻页.排序字段必须是实体中不能为null的属性,
+     * 查询结果必须是实体本身,不支持投影或DTO
+     */
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    /**
+     * 设置是否使用keyset(seek)分页.
+     */
+    public void setKeyset(boolean keyset) {
+        this.keyset = keyset;
+    }
+
+    /**
+     * 获得keyset分页的游标,为null时表示查询第一页.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * 设置keyset分页的游标,即上一页{@link Page#getNextCursor()}的值.设置游标后自动使用keyset分页.
+     */
+    public void setCursor(String cursor) {
+        this.cursor = StringUtils.trimToNull(cursor);
+
+        if (this.cursor != null) {
+            this.keyset = true;
+        }
+    }
+
     /**
      * 根据pageNo和pageSize计算当前页第一条记录在总结果集中的位置, 序号从0开始.
      */
     public int getOffset() {
+        if (keyset) {
+            return 0;
+        }
         return ((pageNo - 1) * pageSize);
     }
 
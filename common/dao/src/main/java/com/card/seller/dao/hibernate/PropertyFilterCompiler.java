@@ -0,0 +1,326 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.dao.hibernate.restriction.*;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.criterion.MatchMode;
+import org.springframework.util.Assert;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * 将{@link PropertyFilter}列表编译为参数化的HQL.
+ * <p/>
+ * 约束名称、属性名称、值的个数和and/or关系相同的过滤器列表称为同一形状,同一形状只生成一次HQL并缓存,
+ * 每次请求只需要转换并绑定值.生成的HQL相同,Hibernate的查询计划缓存与{@link BasicHibernateDao#getQueryMetadata(String)}
+ * 也能直接命中,不再需要每次创建Criteria并翻译为SQL.
+ * <p/>
+ * 只编译{@link RestrictionNames}中内置约束的默认实现,约束被{@link HibernateRestrictionBuilder#setCriterionBuilders(java.util.Map)}
+ * 替换为其他实现时{@link #compile(java.util.List)}返回null,由调用方使用Criteria查询
+ *
+ * @author vincent
+ */
+public class PropertyFilterCompiler {
+
+    /**
+     * 默认最多缓存的HQL形状个数
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 1000;
+
+    //属性名只允许字母、数字、下划线和点,避免拼接到HQL中
+    private static final Pattern PROPERTY_NAME_PATTERN = Pattern.compile("^[A-Za-z_][\\w.]*$");
+
+    private static final Map<Class<?>, String> COMPARISON_OPERATORS = new HashMap<Class<?>, String>();
+
+    private static final Map<Class<?>, MatchMode> LIKE_MODES = new HashMap<Class<?>, MatchMode>();
+
+    static {
+        COMPARISON_OPERATORS.put(EqRestriction.class, "=");
+        COMPARISON_OPERATORS.put(NeRestriction.class, "<>");
+        COMPARISON_OPERATORS.put(GeRestriction.class, ">=");
+        COMPARISON_OPERATORS.put(GtRestriction.class, ">");
+        COMPARISON_OPERATORS.put(LeRestriction.class, "<=");
+        COMPARISON_OPERATORS.put(LtRestriction.class, "<");
+
+        LIKE_MODES.put(LikeRestriction.class, MatchMode.ANYWHERE);
+        LIKE_MODES.put(LLikeRestriction.class, MatchMode.END);
+        LIKE_MODES.put(RLikeRestriction.class, MatchMode.START);
+    }
+
+    private final String entityName;
+
+    private final Cache<String, String> templates;
+
+    /**
+     * 构造方法
+     *
+     * @param entityName 实体名称
+     */
+    public PropertyFilterCompiler(String entityName) {
+        this(entityName, DEFAULT_TEMPLATE_CACHE_SIZE);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param entityName        实体名称
+     * @param templateCacheSize 最多缓存的HQL形状个数
+     */
+    public PropertyFilterCompiler(String entityName, int templateCacheSize) {
+        Assert.hasText(entityName, "entityName不能为空");
+        this.entityName = entityName;
+        this.templates = CacheBuilder.newBuilder().maximumSize(templateCacheSize).recordStats().build();
+    }
+
+    /**
+     * 编译属性过滤器列表
+     *
+     * @param filters 属性过滤器,为空时查询全部
+     * @return 编译结果,存在无法编译的约束时返回null
+     */
+    public CompiledFilter compile(List<PropertyFilter> filters) {
+        final List<FilterShape> shapes = new ArrayList<FilterShape>();
+        Map<String, Object> values = new HashMap<String, Object>();
+        StringBuilder key = new StringBuilder();
+
+        if (filters != null) {
+            Map<String, CriterionBuilder> builders = HibernateRestrictionBuilder.getCriterionBuilders();
+            for (PropertyFilter filter : filters) {
+                if (filter == null) {
+                    continue;
+                }
+                CriterionBuilder builder = builders.get(filter.getRestrictionName());
+                if (builder == null) {
+                    throw new IllegalArgumentException("找不到约束名:" + filter.getRestrictionName());
+                }
+                FilterShape shape = createShape(builder, filter, "f" + shapes.size(), values);
+                if (shape == null) {
+                    return null;
+                }
+                shapes.add(shape);
+                shape.appendKey(key);
+            }
+        }
+
+        try {
+            String queryString = templates.get(key.toString(), new Callable<String>() {
+                @Override
+                public String call() {
+                    return buildQueryString(shapes);
+                }
+            });
+            return new CompiledFilter(queryString, values);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * 获取HQL形状缓存的命中统计
+     *
+     * @return {@link CacheStats}
+     */
+    public CacheStats getTemplateCacheStats() {
+        return templates.stats();
+    }
+
+    /**
+     * 转换过滤器的值并得到它的形状,值按参数名写入values
+     */
+    private FilterShape createShape(CriterionBuilder builder, PropertyFilter filter, String parameterPrefix, Map<String, Object> values) {
+        String[] propertyNames = filter.getPropertyNames();
+        Assert.notEmpty(propertyNames, "属性名称不能为空");
+        for (String propertyName : propertyNames) {
+            if (!PROPERTY_NAME_PATTERN.matcher(propertyName).matches()) {
+                throw new IllegalArgumentException("属性名称不合法:" + propertyName);
+            }
+        }
+
+        Class<?> builderClass = builder.getClass();
+        FilterShape shape = new FilterShape(parameterPrefix, propertyNames);
+
+        if (builderClass == InRestriction.class || builderClass == NinRestriction.class) {
+            CriterionMultipleValueSupport support = (CriterionMultipleValueSupport) builder;
+            Object[] matchValues = (Object[]) support.convertMatchValue(filter.getMatchValue(), filter.getFieldType());
+            int chunkSize = builderClass == InRestriction.class ? ((InRestriction) builder).getChunkSize() : ((NinRestriction) builder).getChunkSize();
+            InClauseSupport.checkParameterCount(matchValues.length, chunkSize);
+            List<List<Object>> chunks = InClauseSupport.partition(Arrays.asList(matchValues), chunkSize);
+
+            shape.setIn(builderClass == InRestriction.class ? "in" : "not in");
+            for (int i = 0; i < chunks.size(); i++) {
+                shape.addSize(chunks.get(i).size());
+                values.put(parameterPrefix + "_" + i, chunks.get(i));
+            }
+            return shape;
+        }
+
+        String operator = COMPARISON_OPERATORS.get(builderClass);
+        MatchMode likeMode = LIKE_MODES.get(builderClass);
+        if (operator == null && likeMode == null) {
+            return null;
+        }
+
+        MatchValue matchValue = ((CriterionSingleValueSupport) builder).getMatchValue(filter.getMatchValue(), filter.getFieldType());
+        shape.setSingleValue(operator, likeMode, matchValue.hasOrOperate());
+        List<Object> matchValues = matchValue.getValues();
+        for (int i = 0; i < matchValues.size(); i++) {
+            Object value = matchValues.get(i);
+            if (value == null) {
+                shape.addSize(0);
+                continue;
+            }
+            shape.addSize(1);
+            values.put(parameterPrefix + "_" + i, likeMode == null ? value : likeMode.toMatchString(value.toString()));
+        }
+        return shape;
+    }
+
+    /**
+     * 根据各过滤器的形状生成HQL
+     */
+    private String buildQueryString(List<FilterShape> shapes) {
+        StringBuilder builder = new StringBuilder("from ").append(entityName);
+        for (int i = 0; i < shapes.size(); i++) {
+            builder.append(i == 0 ? " where " : " and ");
+            shapes.get(i).appendCondition(builder);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 单个过滤器的形状:约束、属性名称、每个值(或in分片)的参数个数,不包含值本身
+     */
+    private static class FilterShape {
+
+        private final String parameterPrefix;
+        private final String[] propertyNames;
+        //比较运算符,like时为null
+        private String operator;
+        private MatchMode likeMode;
+        //in或not in,单值约束时为null
+        private String inOperator;
+        private boolean or;
+        //单值约束时每个值的参数个数(0表示null),in约束时每个分片的值个数
+        private final List<Integer> sizes = new ArrayList<Integer>();
+
+        private FilterShape(String parameterPrefix, String[] propertyNames) {
+            this.parameterPrefix = parameterPrefix;
+            this.propertyNames = propertyNames;
+        }
+
+        private void setIn(String inOperator) {
+            this.inOperator = inOperator;
+        }
+
+        private void setSingleValue(String operator, MatchMode likeMode, boolean or) {
+            this.operator = operator;
+            this.likeMode = likeMode;
+            this.or = or;
+        }
+
+        private void addSize(int size) {
+            sizes.add(size);
+        }
+
+        private void appendKey(StringBuilder key) {
+            key.append(inOperator != null ? inOperator : (operator != null ? operator : likeMode.toString()))
+                    .append(':').append(StringUtils.join(propertyNames, '|'))
+                    .append(':').append(or ? '|' : '&')
+                    .append(':').append(sizes).append(';');
+        }
+
+        private void appendCondition(StringBuilder builder) {
+            builder.append('(');
+            if (inOperator != null) {
+                //多个属性之间为or,in的分片之间为or,not in的分片之间为and
+                for (int p = 0; p < propertyNames.length; p++) {
+                    if (p > 0) {
+                        builder.append(" or ");
+                    }
+                    builder.append('(');
+                    for (int i = 0; i < sizes.size(); i++) {
+                        if (i > 0) {
+                            builder.append(inOperator.equals("in") ? " or " : " and ");
+                        }
+                        builder.append(propertyNames[p]).append(' ').append(inOperator).append(" (:").append(parameterPrefix).append('_').append(i).append(')');
+                    }
+                    builder.append(')');
+                }
+            } else {
+                //多个值之间为and或or,每个值的多个属性之间为or
+                for (int i = 0; i < sizes.size(); i++) {
+                    if (i > 0) {
+                        builder.append(or ? " or " : " and ");
+                    }
+                    builder.append('(');
+                    for (int p = 0; p < propertyNames.length; p++) {
+                        if (p > 0) {
+                            builder.append(" or ");
+                        }
+                        builder.append(propertyNames[p]);
+                        if (sizes.get(i) == 0) {
+                            builder.append("=".equals(operator) ? " is null" : " is not null");
+                        } else {
+                            builder.append(' ').append(operator != null ? operator : "like").append(" :").append(parameterPrefix).append('_').append(i);
+                        }
+                    }
+                    builder.append(')');
+                }
+            }
+            builder.append(')');
+        }
+    }
+
+    /**
+     * 编译结果,包括HQL与按参数名绑定的值
+     */
+    public static class CompiledFilter {
+
+        private final String queryString;
+        private final Map<String, Object> values;
+
+        private CompiledFilter(String queryString, Map<String, Object> values) {
+            this.queryString = queryString;
+            this.values = values;
+        }
+
+        /**
+         * 获取HQL,同一形状的过滤器列表返回同一个字符串
+         *
+         * @return String
+         */
+        public String getQueryString() {
+            return queryString;
+        }
+
+        /**
+         * 获取按参数名绑定的值
+         *
+         * @return Map
+         */
+        public Map<String, Object> getValues() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.FieldType;
+
+/**
+ * 属性过滤器表达式的解析结果,如"LIKES_name_OR_phone"解析为约束名称LIKE、属性类型S和属性名称name,phone.
+ * 解析结果不可变,由{@link PropertyFilters#build(String, String)}按表达式缓存,每次只需要用对比值创建{@link PropertyFilter}
+ *
+ * @author vincent
+ */
+public class PropertyFilterDescriptor {
+
+    private final String expression;
+    private final String restrictionName;
+    private final FieldType fieldType;
+    private final String[] propertyNames;
+
+    /**
+     * 构造方法
+     *
+     * @param expression      表达式
+     * @param restrictionName 约束名称
+     * @param fieldType       属性类型
+     * @param propertyNames   属性名称
+     */
+    public PropertyFilterDescriptor(String expression, String restrictionName, FieldType fieldType, String[] propertyNames) {
+        this.expression = expression;
+        this.restrictionName = restrictionName;
+        this.fieldType = fieldType;
+        this.propertyNames = propertyNames.clone();
+    }
+
+    /**
+     * 使用对比值创建属性过滤器,属性名称为副本,修改过滤器不会影响缓存的解析结果
+     *
+     * @param matchValue 对比值
+     * @return {@link PropertyFilter}
+     */
+    public PropertyFilter newFilter(String matchValue) {
+        return new PropertyFilter(restrictionName, fieldType, propertyNames.clone(), matchValue);
+    }
+
+    /**
+     * 获取表达式
+     *
+     * @return String
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 获取约束名称
+     *
+     * @return String
+     */
+    public String getRestrictionName() {
+        return restrictionName;
+    }
+
+    /**
+     * 获取属性类型
+     *
+     * @return {@link FieldType}
+     */
+    public FieldType getFieldType() {
+        return fieldType;
+    }
+
+    /**
+     * 获取属性名称的副本
+     *
+     * @return String[]
+     */
+    public String[] getPropertyNames() {
+        return propertyNames.clone();
+    }
+}
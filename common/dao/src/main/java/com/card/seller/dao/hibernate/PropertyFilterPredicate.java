@@ -0,0 +1,524 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.dao.hibernate.restriction.*;
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.bytecode.spi.ReflectionOptimizer;
+import org.hibernate.cfg.Environment;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.property.ChainedPropertyAccessor;
+import org.hibernate.property.Getter;
+import org.hibernate.property.PropertyAccessor;
+import org.hibernate.property.PropertyAccessorFactory;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * 将{@link PropertyFilter}列表编译为内存中的条件,用于过滤已在内存或缓存中的对象,不需要再查询数据库.
+ * <p/>
+ * 条件的语义与{@link RestrictionNames}中内置约束生成的SQL一致:值的转换和,与|分隔符由对应的{@link CriterionBuilder}处理,
+ * 多个属性之间为or,属性值为null时除EQ/NE的null值外都不匹配,LIKE中的%和_仍为通配符.
+ * 字符串按{@link String#compareTo(String)}比较,与数据库的二进制排序规则(如PostgreSQL的C排序规则)一致,
+ * 数据库列使用其他排序规则时GT/GE/LT/LE的结果可能不同;类型不同的数字按数值比较.
+ * 属性有getter和setter时通过Hibernate字节码提供者生成的访问类一次读取全部用到的属性,否则使用Hibernate的Getter.
+ * <p/>
+ * 编译结果不可变,可以在多个线程中重复使用:
+ * <pre>
+ * PropertyFilterPredicate&lt;Member&gt; predicate = PropertyFilterPredicate.compile(Member.class, filters);
+ * List&lt;Member&gt; result = predicate.filter(members, pool);
+ * </pre>
+ *
+ * @param <T> 对象类型
+ * @author vincent
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class PropertyFilterPredicate<T> implements Predicate<T> {
+
+    /**
+     * 并行过滤时每个任务最少处理的对象个数
+     */
+    public static final int PARALLEL_THRESHOLD = 1024;
+
+    //按类型与属性名缓存的属性读取方式,避免重复生成访问类
+    private static final Cache<String, PropertyReader> READERS = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    private final PropertyReader reader;
+    private final Condition[] conditions;
+
+    private PropertyFilterPredicate(PropertyReader reader, Condition[] conditions) {
+        this.reader = reader;
+        this.conditions = conditions;
+    }
+
+    /**
+     * 编译属性过滤器列表
+     *
+     * @param type    对象类型
+     * @param filters 属性过滤器,为空时匹配全部对象
+     * @return {@link PropertyFilterPredicate}
+     */
+    public static <T> PropertyFilterPredicate<T> compile(Class<T> type, List<PropertyFilter> filters) {
+        Assert.notNull(type, "type不能为空");
+
+        List<PropertyFilter> list = new ArrayList<PropertyFilter>();
+        List<String> propertyNames = new ArrayList<String>();
+        if (filters != null) {
+            for (PropertyFilter filter : filters) {
+                if (filter == null) {
+                    continue;
+                }
+                list.add(filter);
+                for (String propertyName : filter.getPropertyNames()) {
+                    if (!propertyNames.contains(propertyName)) {
+                        propertyNames.add(propertyName);
+                    }
+                }
+            }
+        }
+
+        PropertyReader reader = getReader(type, propertyNames);
+        Map<String, CriterionBuilder> builders = HibernateRestrictionBuilder.getCriterionBuilders();
+        Condition[] conditions = new Condition[list.size()];
+        for (int i = 0; i < conditions.length; i++) {
+            PropertyFilter filter = list.get(i);
+            CriterionBuilder builder = builders.get(filter.getRestrictionName());
+            if (builder == null) {
+                throw new IllegalArgumentException("找不到约束名:" + filter.getRestrictionName());
+            }
+            int[] indexes = new int[filter.getPropertyNames().length];
+            for (int p = 0; p < indexes.length; p++) {
+                indexes[p] = propertyNames.indexOf(filter.getPropertyNames()[p]);
+            }
+            conditions[i] = createCondition(builder, filter, indexes);
+        }
+        return new PropertyFilterPredicate<T>(reader, conditions);
+    }
+
+    /**
+     * 对象是否满足全部过滤条件
+     *
+     * @param input 对象
+     * @return boolean
+     */
+    @Override
+    public boolean apply(T input) {
+        if (input == null) {
+            return false;
+        }
+        Object[] values = reader.read(input);
+        for (Condition condition : conditions) {
+            if (!condition.matches(values)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 过滤集合,保持原顺序
+     *
+     * @param items 对象集合
+     * @return 满足条件的对象
+     */
+    public List<T> filter(Collection<T> items) {
+        List<T> result = new ArrayList<T>();
+        for (T item : items) {
+            if (apply(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在ForkJoinPool中并行过滤列表,保持原顺序.列表较小时直接在当前线程中过滤
+     *
+     * @param items 对象列表,建议为ArrayList等支持随机访问的列表
+     * @param pool  ForkJoinPool
+     * @return 满足条件的对象
+     */
+    public List<T> filter(List<T> items, ForkJoinPool pool) {
+        Assert.notNull(pool, "pool不能为空");
+        if (items.size() <= PARALLEL_THRESHOLD) {
+            return filter(items);
+        }
+        List<T> source = items instanceof RandomAccess ? items : new ArrayList<T>(items);
+        try {
+            return pool.submit(new FilterTask(source, 0, source.size())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("并行过滤被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("并行过滤失败", cause);
+        }
+    }
+
+    /**
+     * 根据约束的实现创建条件,值通过约束自身转换,保证与数据库查询的值一致
+     */
+    private static Condition createCondition(CriterionBuilder builder, PropertyFilter filter, int[] indexes) {
+        Class<?> builderClass = builder.getClass();
+
+        if (builderClass == InRestriction.class || builderClass == NinRestriction.class) {
+            Object[] values = (Object[]) ((CriterionMultipleValueSupport) builder).convertMatchValue(filter.getMatchValue(), filter.getFieldType());
+            return new InCondition(indexes, values, builderClass == NinRestriction.class);
+        }
+
+        Operator operator = Operator.forBuilder(builderClass);
+        if (operator == null) {
+            throw new IllegalArgumentException("约束" + filter.getRestrictionName() + "不支持在内存中计算");
+        }
+        MatchValue matchValue = ((CriterionSingleValueSupport) builder).getMatchValue(filter.getMatchValue(), filter.getFieldType());
+        return new SingleValueCondition(indexes, operator, matchValue.getValues(), matchValue.hasOrOperate());
+    }
+
+    private static PropertyReader getReader(final Class type, final List<String> propertyNames) {
+        String key = type.getName() + ":" + StringUtils.join(propertyNames, ',');
+        PropertyReader reader = READERS.getIfPresent(key);
+        if (reader == null) {
+            reader = new PropertyReader(type, propertyNames.toArray(new String[propertyNames.size()]));
+            READERS.put(key, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * 比较两个值,数字类型不同时按数值比较,日期按时间戳比较
+     */
+    private static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number && left.getClass() != right.getClass()) {
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+        if (left instanceof Date && right instanceof Date) {
+            long l = ((Date) left).getTime();
+            long r = ((Date) right).getTime();
+            return l < r ? -1 : (l == r ? 0 : 1);
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    private static boolean equal(Object left, Object right) {
+        if (left instanceof Comparable && right instanceof Comparable) {
+            return compare(left, right) == 0;
+        }
+        return left.equals(right);
+    }
+
+    /**
+     * 读取对象中用到的属性,结果顺序与属性名顺序一致
+     */
+    private static class PropertyReader {
+
+        private final String[] propertyNames;
+        private final ReflectionOptimizer.AccessOptimizer optimizer;
+        private final Getter[][] getters;
+
+        private PropertyReader(Class type, String[] propertyNames) {
+            this.propertyNames = propertyNames;
+
+            PropertyAccessor accessor = new ChainedPropertyAccessor(new PropertyAccessor[]{
+                    PropertyAccessorFactory.getPropertyAccessor(type, null),
+                    PropertyAccessorFactory.getPropertyAccessor("field")
+            });
+
+            this.getters = new Getter[propertyNames.length][];
+            String[] getterNames = new String[propertyNames.length];
+            String[] setterNames = new String[propertyNames.length];
+            Class[] propertyClasses = new Class[propertyNames.length];
+            boolean optimizable = propertyNames.length > 0;
+
+            for (int i = 0; i < propertyNames.length; i++) {
+                String[] path = StringUtils.split(propertyNames[i], '.');
+                Class owner = type;
+                getters[i] = new Getter[path.length];
+                for (int j = 0; j < path.length; j++) {
+                    getters[i][j] = accessor.getGetter(owner, path[j]);
+                    owner = getters[i][j].getReturnType();
+                }
+
+                if (path.length == 1) {
+                    getterNames[i] = getters[i][0].getMethodName();
+                    setterNames[i] = accessor.getSetter(type, path[0]).getMethodName();
+                    propertyClasses[i] = getters[i][0].getReturnType();
+                }
+                optimizable = optimizable && getterNames[i] != null && setterNames[i] != null;
+            }
+
+            //字节码提供者无法生成访问类时返回null,此时使用Getter读取
+            ReflectionOptimizer reflectionOptimizer = optimizable ? Environment.getBytecodeProvider().getReflectionOptimizer(type, getterNames, setterNames, propertyClasses) : null;
+            this.optimizer = reflectionOptimizer == null ? null : reflectionOptimizer.getAccessOptimizer();
+        }
+
+        private Object[] read(Object bean) {
+            if (optimizer != null) {
+                return optimizer.getPropertyValues(bean);
+            }
+            Object[] values = new Object[propertyNames.length];
+            for (int i = 0; i < getters.length; i++) {
+                Object value = bean;
+                for (int j = 0; j < getters[i].length && value != null; j++) {
+                    value = getters[i][j].get(value);
+                }
+                values[i] = value;
+            }
+            return values;
+        }
+    }
+
+    /**
+     * 单值约束的运算
+     */
+    private static enum Operator {
+
+        EQ, NE, GT, GE, LT, LE, LIKE, LLIKE, RLIKE;
+
+        private static Operator forBuilder(Class<?> builderClass) {
+            if (builderClass == EqRestriction.class) {
+                return EQ;
+            } else if (builderClass == NeRestriction.class) {
+                return NE;
+            } else if (builderClass == GtRestriction.class) {
+                return GT;
+            } else if (builderClass == GeRestriction.class) {
+                return GE;
+            } else if (builderClass == LtRestriction.class) {
+                return LT;
+            } else if (builderClass == LeRestriction.class) {
+                return LE;
+            } else if (builderClass == LikeRestriction.class) {
+                return LIKE;
+            } else if (builderClass == LLikeRestriction.class) {
+                return LLIKE;
+            } else if (builderClass == RLikeRestriction.class) {
+                return RLIKE;
+            }
+            return null;
+        }
+
+        private MatchMode getMatchMode() {
+            switch (this) {
+                case LIKE:
+                    return MatchMode.ANYWHERE;
+                case LLIKE:
+                    return MatchMode.END;
+                case RLIKE:
+                    return MatchMode.START;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * 单个属性过滤器对应的条件
+     */
+    private static abstract class Condition {
+
+        protected final int[] indexes;
+
+        protected Condition(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        protected abstract boolean matches(Object[] values);
+    }
+
+    /**
+     * EQ/NE/GT/GE/LT/LE/LIKE/LLIKE/RLIKE:多个值之间为and或or,每个值的多个属性之间为or
+     */
+    private static class SingleValueCondition extends Condition {
+
+        private final Operator operator;
+        private final Object[] values;
+        private final Pattern[] patterns;
+        private final boolean or;
+
+        private SingleValueCondition(int[] indexes, Operator operator, List<Object> values, boolean or) {
+            super(indexes);
+            this.operator = operator;
+            this.values = values.toArray();
+            this.or = or;
+            this.patterns = new Pattern[this.values.length];
+
+            MatchMode matchMode = operator.getMatchMode();
+            if (matchMode != null) {
+                for (int i = 0; i < this.values.length; i++) {
+                    patterns[i] = toPattern(matchMode.toMatchString(this.values[i].toString()));
+                }
+            }
+        }
+
+        @Override
+        protected boolean matches(Object[] propertyValues) {
+            for (int i = 0; i < values.length; i++) {
+                boolean matched = false;
+                for (int index : indexes) {
+                    if (matches(propertyValues[index], i)) {
+                        matched = true;
+                        break;
+                    }
+                }
+                if (or && matched) {
+                    return true;
+                }
+                if (!or && !matched) {
+                    return false;
+                }
+            }
+            return !or;
+        }
+
+        private boolean matches(Object propertyValue, int valueIndex) {
+            Object value = values[valueIndex];
+            if (value == null) {
+                //EQ/NE的"null"值对应is null/is not null
+                return operator == Operator.EQ ? propertyValue == null : propertyValue != null;
+            }
+            if (propertyValue == null) {
+                return false;
+            }
+            switch (operator) {
+                case EQ:
+                    return equal(propertyValue, value);
+                case NE:
+                    return !equal(propertyValue, value);
+                case GT:
+                    return compare(propertyValue, value) > 0;
+                case GE:
+                    return compare(propertyValue, value) >= 0;
+                case LT:
+                    return compare(propertyValue, value) < 0;
+                case LE:
+                    return compare(propertyValue, value) <= 0;
+                default:
+                    return patterns[valueIndex].matcher(propertyValue.toString()).matches();
+            }
+        }
+
+        /**
+         * 将LIKE模式转换为正则表达式,%匹配任意个字符,_匹配单个字符
+         */
+        private static Pattern toPattern(String like) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < like.length(); i++) {
+                char c = like.charAt(i);
+                if (c == '%' || c == '_') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '%' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+    }
+
+    /**
+     * IN/NIN:多个属性之间为or,属性值为null时不匹配
+     */
+    private static class InCondition extends Condition {
+
+        private final Object[] values;
+        private final Set<Object> valueSet;
+        private final boolean not;
+
+        private InCondition(int[] indexes, Object[] values, boolean not) {
+            super(indexes);
+            this.values = values;
+            this.valueSet = new HashSet<Object>(Arrays.asList(values));
+            this.not = not;
+        }
+
+        @Override
+        protected boolean matches(Object[] propertyValues) {
+            for (int index : indexes) {
+                Object propertyValue = propertyValues[index];
+                if (propertyValue != null && contains(propertyValue) != not) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean contains(Object propertyValue) {
+            if (valueSet.contains(propertyValue)) {
+                return true;
+            }
+            //类型不同的数字或日期需要逐个比较
+            if (propertyValue instanceof Number || propertyValue instanceof Date) {
+                for (Object value : values) {
+                    if (value != null && equal(propertyValue, value)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 按下标范围拆分的并行过滤任务
+     */
+    private class FilterTask extends RecursiveTask<List<T>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> items;
+        private final int from;
+        private final int to;
+
+        private FilterTask(List<T> items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return filter(items.subList(from, to));
+            }
+            int middle = (from + to) >>> 1;
+            FilterTask left = new FilterTask(items, from, middle);
+            left.fork();
+            List<T> right = new FilterTask(items, middle, to).compute();
+            List<T> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+}
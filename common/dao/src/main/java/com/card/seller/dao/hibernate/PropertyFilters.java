@@ -17,6 +17,9 @@ package com.card.seller.dao.hibernate;
 
 import com.card.seller.domain.FieldType;
 import com.card.seller.domain.ServletUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.Assert;
 
@@ -32,6 +35,17 @@ import java.util.Map;
  */
 public class PropertyFilters {
 
+    /**
+     * 表达式解析结果最多缓存的表达式个数
+     */
+    public static final int DESCRIPTOR_CACHE_SIZE = 1000;
+
+    //按表达式缓存的解析结果,表达式来自请求参数名,需要限制个数
+    private static final Cache<String, PropertyFilterDescriptor> DESCRIPTORS = CacheBuilder.newBuilder()
+            .maximumSize(DESCRIPTOR_CACHE_SIZE)
+            .recordStats()
+            .build();
+
     /**
      * 通过表达式和对比值创建属性过滤器
      * <p>
@@ -45,11 +59,43 @@ public class PropertyFilters {
      * @param matchValue 对比值
      * @return {@link PropertyFilter}
      */
-    @SuppressWarnings("static-access")
     public static PropertyFilter build(String expression, String matchValue) {
+        return getDescriptor(expression).newFilter(matchValue);
+    }
 
+    /**
+     * 获取表达式的解析结果,同一表达式只解析一次
+     *
+     * @param expression 表达式
+     * @return {@link PropertyFilterDescriptor}
+     */
+    public static PropertyFilterDescriptor getDescriptor(String expression) {
         Assert.hasText(expression, "表达式不能为空");
 
+        PropertyFilterDescriptor descriptor = DESCRIPTORS.getIfPresent(expression);
+        if (descriptor == null) {
+            //并发时可能重复解析,结果相同
+            descriptor = parse(expression);
+            DESCRIPTORS.put(expression, descriptor);
+        }
+        return descriptor;
+    }
+
+    /**
+     * 获取表达式解析缓存的命中统计
+     *
+     * @return {@link CacheStats}
+     */
+    public static CacheStats getDescriptorCacheStats() {
+        return DESCRIPTORS.stats();
+    }
+
+    /**
+     * 解析表达式
+     */
+    @SuppressWarnings("static-access")
+    private static PropertyFilterDescriptor parse(String expression) {
+
         String restrictionsNameAndClassType = StringUtils.substringBefore(expression, "_");
 
         String restrictionsName = StringUtils.substring(restrictionsNameAndClassType, 0, restrictionsNameAndClassType.length() - 1);
@@ -72,7 +118,7 @@ public class PropertyFilters {
             propertyNames[0] = StringUtils.substringAfterLast(expression, "_");
         }
 
-        return new PropertyFilter(restrictionsName, FieldType, propertyNames, matchValue);
+        return new PropertyFilterDescriptor(expression, restrictionsName, FieldType, propertyNames);
     }
 
     /**
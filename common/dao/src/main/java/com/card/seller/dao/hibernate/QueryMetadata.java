@@ -0,0 +1,199 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.QueryException;
+import org.hibernate.engine.query.spi.ParameterParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HQL/SQL查询语句的解析结果,包括NamedQuery对应的语句、count语句和命名参数.
+ * 解析结果不可变,由{@link BasicHibernateDao#getQueryMetadata(String)}缓存,同一查询语句只解析一次.
+ *
+ * @author vincent
+ */
+public class QueryMetadata {
+
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("order\\s*by", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM_PATTERN = Pattern.compile("from", Pattern.CASE_INSENSITIVE);
+
+    private final String queryOrNamedQuery;
+    private final String queryString;
+    private final boolean namedQuery;
+    private final boolean namedSQLQuery;
+    private final String unorderedQuery;
+    private final String countQuery;
+    private final String existsQuery;
+    private final List<String> namedParameters;
+
+    /**
+     * 解析查询语句
+     *
+     * @param queryOrNamedQuery 查询语句或者NamedQuery名称
+     * @param queryString       实际的查询语句,非NamedQuery时与queryOrNamedQuery相同
+     * @param namedQuery        是否为NamedQuery
+     * @param namedSQLQuery     是否为NamedSQLQuery
+     */
+    public QueryMetadata(String queryOrNamedQuery, String queryString, boolean namedQuery, boolean namedSQLQuery) {
+        this.queryOrNamedQuery = queryOrNamedQuery;
+        this.queryString = queryString;
+        this.namedQuery = namedQuery;
+        this.namedSQLQuery = namedSQLQuery;
+        this.unorderedQuery = removeOrders(queryString);
+        this.countQuery = prepareCountQuery(queryString, unorderedQuery);
+        this.existsQuery = "select 1 " + getFromQuery(unorderedQuery);
+        this.namedParameters = parseNamedParameters(queryString);
+    }
+
+    /**
+     * 获取查询语句或者NamedQuery名称,即缓存的key
+     *
+     * @return String
+     */
+    public String getQueryOrNamedQuery() {
+        return queryOrNamedQuery;
+    }
+
+    /**
+     * 获取实际的查询语句
+     *
+     * @return String
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * 是否为Hibernate的NamedQuery
+     *
+     * @return boolean
+     */
+    public boolean isNamedQuery() {
+        return namedQuery;
+    }
+
+    /**
+     * 是否为Hibernate的NamedSQLQuery
+     *
+     * @return boolean
+     */
+    public boolean isNamedSQLQuery() {
+        return namedSQLQuery;
+    }
+
+    /**
+     * 获取删除order by后的查询语句
+     *
+     * @return String
+     */
+    public String getUnorderedQuery() {
+        return unorderedQuery;
+    }
+
+    /**
+     * 获取计算总数的查询语句
+     *
+     * @return String
+     */
+    public String getCountQuery() {
+        return countQuery;
+    }
+
+    /**
+     * 获取判断记录是否存在的查询语句,select部分替换为常量1,不会构建实体
+     *
+     * @return String
+     */
+    public String getExistsQuery() {
+        return existsQuery;
+    }
+
+    /**
+     * 获取查询语句中的命名参数名称,按第一次出现的顺序排列,同名参数只出现一次
+     *
+     * @return List
+     */
+    public List<String> getNamedParameters() {
+        return namedParameters;
+    }
+
+    /**
+     * 绑定计算总数的查询语句,select与from之间的字段作为count字段,没有时使用count(*)
+     */
+    private static String prepareCountQuery(String queryString, String unorderedQuery) {
+        String countField = StringUtils.substringBetween(queryString, "select", "from");
+
+        return "select count (" + (StringUtils.isEmpty(countField) ? "*" : countField) + ") " + getFromQuery(unorderedQuery) + " ";
+    }
+
+    /**
+     * 获取查询语句从from开始的部分
+     */
+    private static String getFromQuery(String unorderedQuery) {
+        Matcher matcher = FROM_PATTERN.matcher(unorderedQuery);
+        return matcher.find() ? unorderedQuery.substring(matcher.start()) : unorderedQuery;
+    }
+
+    /**
+     * 删除查询语句中order by及之后的内容
+     */
+    private static String removeOrders(String queryString) {
+        Matcher matcher = ORDER_BY_PATTERN.matcher(queryString);
+        return matcher.find() ? queryString.substring(0, matcher.start()) : queryString;
+    }
+
+    /**
+     * 解析查询语句中的命名参数,语句无法解析时返回空列表,由Hibernate创建Query时报告错误
+     */
+    private static List<String> parseNamedParameters(String queryString) {
+        final List<String> names = new ArrayList<String>();
+        try {
+            ParameterParser.parse(queryString, new ParameterParser.Recognizer() {
+                @Override
+                public void outParameter(int position) {
+                }
+
+                @Override
+                public void ordinalParameter(int position) {
+                }
+
+                @Override
+                public void namedParameter(String name, int position) {
+                    if (!names.contains(name)) {
+                        names.add(name);
+                    }
+                }
+
+                @Override
+                public void jpaPositionalParameter(String name, int position) {
+                }
+
+                @Override
+                public void other(char character) {
+                }
+            });
+        } catch (QueryException e) {
+            names.clear();
+        }
+        return Collections.unmodifiableList(names);
+    }
+}
@@ -76,4 +76,24 @@ public interface RestrictionNames {
      * 模糊查询（from Object o where o.property like %?%)
      */
     public static String LIKE = "LIKE";
+
+    /**
+     * 区间查询（from Object o where o.property between ? and ?)
+     */
+    public static String BETWEEN = "BETWEEN";
+
+    /**
+     * 为空查询（from Object o where o.property is null)
+     */
+    public static String NULL = "NULL";
+
+    /**
+     * 非空查询（from Object o where o.property is not null)
+     */
+    public static String NNULL = "NNULL";
+
+    /**
+     * 数组包含查询（from Object o where ? = any(o.property))
+     */
+    public static String ACONTAINS = "ACONTAINS";
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+/**
+ * 流式查询回调接口,配合{@link BasicHibernateDao#scrollByQuery(String, java.util.Map, ScrollCallback)}等方法
+ * 逐行处理大结果集,查询结果不会一次性加载到内存中
+ * <p/>
+ * <pre>
+ * memberDao.scrollByQuery("from Member", null, new ScrollCallback&lt;Member&gt;() {
+ *     public void doWithRow(Member member) {
+ *         writer.write(member);
+ *     }
+ * });
+ * </pre>
+ *
+ * @param <X> 行数据类型,查询只有一列时为该列的值,否则为Object[]
+ * @author vincent
+ */
+public interface ScrollCallback<X> {
+
+    /**
+     * 处理一行查询结果
+     *
+     * @param row 行数据
+     */
+    public void doWithRow(X row);
+}
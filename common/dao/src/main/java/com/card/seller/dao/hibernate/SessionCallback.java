@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.hibernate.Session;
+
+/**
+ * Session回调接口,配合{@link BasicHibernateDao#executeReadOnly(SessionCallback)}在指定的Session设置下执行一组查询
+ *
+ * @param <X> 返回值类型
+ * @author vincent
+ */
+public interface SessionCallback<X> {
+
+    /**
+     * 使用Session执行操作
+     *
+     * @param session 当前Session
+     * @return 操作结果
+     */
+    public X doInSession(Session session);
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并并发的相同请求.同一个key同时只有一个线程(leader)真正执行,执行期间其他相同key的请求等待并共享它的结果或异常,
+ * 执行完成后立即移除,之后的请求会重新执行,因此不会带来缓存的过期问题.
+ * <p/>
+ * 结果会被多个线程共享,不应返回与Session绑定的对象,应返回主键,标量值或不可变对象
+ *
+ * @param <K> 请求标识类型,需要正确实现equals与hashCode
+ * @param <V> 结果类型
+ * @author vincent
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong executionCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * 执行请求,有相同key的请求正在执行时等待它的结果
+     *
+     * @param key    请求标识
+     * @param loader 请求的执行逻辑
+     * @return 执行结果
+     */
+    public V execute(K key, Callable<V> loader) {
+        Assert.notNull(key, "key不能为空");
+        Assert.notNull(loader, "loader不能为空");
+
+        callCount.incrementAndGet();
+
+        FutureTask<V> task = new FutureTask<V>(loader);
+        FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+
+        if (existing == null) {
+            executionCount.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+        } else {
+            coalescedCount.incrementAndGet();
+            task = existing;
+        }
+
+        return getResult(task);
+    }
+
+    /**
+     * 获取调用次数
+     *
+     * @return long
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * 获取真正执行的次数
+     *
+     * @return long
+     */
+    public long getExecutionCount() {
+        return executionCount.get();
+    }
+
+    /**
+     * 获取被合并(共享了其他线程结果)的调用次数
+     *
+     * @return long
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 获取被合并的调用占总调用次数的比例
+     *
+     * @return double
+     */
+    public double getCoalescedRatio() {
+        long calls = callCount.get();
+        return calls == 0 ? 0 : (double) coalescedCount.get() / calls;
+    }
+
+    /**
+     * 获取正在执行的请求个数
+     *
+     * @return int
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private V getResult(FutureTask<V> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException("请求执行失败", cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.type.Type;
+import org.springframework.util.Assert;
+
+/**
+ * 批量更新时属性的新值表达式,配合{@link HibernateSupportDao#updateByPropertyFilter(java.util.List, java.util.Map)}使用.
+ * 表达式为SQL片段,{column}表示属性对应的列,?为绑定参数.
+ * <p/>
+ * 例如:
+ * <pre>
+ * Map&lt;String, Object&gt; values = new HashMap&lt;String, Object&gt;();
+ * values.put("balance", UpdateExpression.increment(new BigDecimal(10)));
+ * values.put("lastLoginIp", null);
+ * memberDao.updateByPropertyFilter(filters, values);
+ * </pre>
+ *
+ * @author vincent
+ */
+public class UpdateExpression {
+
+    /**
+     * 表达式中属性对应列的占位符
+     */
+    public static final String COLUMN_PLACEHOLDER = "{column}";
+
+    private final String expression;
+    private final Object[] values;
+    private final Type[] types;
+    //是否按属性类型绑定参数
+    private final boolean propertyTyped;
+
+    private UpdateExpression(String expression, Object[] values, Type[] types, boolean propertyTyped) {
+        Assert.hasText(expression, "表达式不能为空");
+        Assert.isTrue(StringUtils.countMatches(expression, "?") == values.length, "表达式的参数个数与值的个数不一致");
+        this.expression = expression;
+        this.values = values;
+        this.types = types;
+        this.propertyTyped = propertyTyped;
+    }
+
+    /**
+     * 设置为指定值,值按属性类型绑定
+     *
+     * @param value 值,为null时设置为null
+     * @return UpdateExpression
+     */
+    public static UpdateExpression value(Object value) {
+        if (value == null) {
+            return new UpdateExpression("null", new Object[0], new Type[0], false);
+        }
+        return new UpdateExpression("?", new Object[]{value}, new Type[1], true);
+    }
+
+    /**
+     * 在原值的基础上增加delta,值按属性类型绑定
+     *
+     * @param delta 增量,可以为负数
+     * @return UpdateExpression
+     */
+    public static UpdateExpression increment(Number delta) {
+        Assert.notNull(delta, "增量不能为空");
+        return new UpdateExpression(COLUMN_PLACEHOLDER + " + ?", new Object[]{delta}, new Type[1], true);
+    }
+
+    /**
+     * 自定义SQL表达式,值按其Java类型推断Hibernate类型,因此值不能为null;需要绑定null时使用
+     * {@link #sql(String, Object[], org.hibernate.type.Type[])}指定类型
+     *
+     * @param expression SQL表达式,如"coalesce({column}, 0) * ?"
+     * @param values     绑定参数
+     * @return UpdateExpression
+     */
+    public static UpdateExpression sql(String expression, Object... values) {
+        Assert.notNull(values, "绑定参数不能为空");
+        Assert.noNullElements(values, "无法推断null值的类型,请使用sql(String, Object[], Type[])指定类型");
+        return new UpdateExpression(expression, values, new Type[values.length], false);
+    }
+
+    /**
+     * 自定义SQL表达式
+     *
+     * @param expression SQL表达式
+     * @param values     绑定参数
+     * @param types      绑定参数的Hibernate类型,不能包含null
+     * @return UpdateExpression
+     */
+    public static UpdateExpression sql(String expression, Object[] values, Type[] types) {
+        Assert.isTrue(values.length == types.length, "值与类型的个数不一致");
+        Assert.noNullElements(types, "绑定参数的类型不能为空");
+        return new UpdateExpression(expression, values, types, false);
+    }
+
+    /**
+     * 是否为按属性类型绑定的表达式(value/increment)
+     *
+     * @return boolean
+     */
+    public boolean isPropertyTyped() {
+        return propertyTyped;
+    }
+
+    /**
+     * 生成SQL片段
+     *
+     * @param column 属性对应的列名
+     * @return String
+     */
+    public String toSqlString(String column) {
+        return StringUtils.replace(expression, COLUMN_PLACEHOLDER, column);
+    }
+
+    /**
+     * 获取绑定参数
+     *
+     * @return Object[]
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * 获取绑定参数的类型,元素为null时由调用方推断
+     *
+     * @return Type[]
+     */
+    public Type[] getTypes() {
+        return types;
+    }
+}
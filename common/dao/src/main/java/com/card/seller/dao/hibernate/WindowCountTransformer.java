@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.hibernate.transform.ResultTransformer;
+
+import java.util.List;
+
+/**
+ * count(*) over()窗口函数的结果转换器.从每行结果中取出并移除总记录数列,再交给实际的ResultTransformer转换,
+ * 使分页数据与总记录数在同一条SQL中返回.
+ * <p/>
+ * 每次查询需要创建新的实例,查询结果为空时{@link #getTotalItems()}返回-1.
+ *
+ * @author vincent
+ */
+@SuppressWarnings("rawtypes")
+public class WindowCountTransformer implements ResultTransformer {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 总记录数列的别名
+     */
+    public static final String TOTAL_ALIAS = "window_total__";
+
+    private final ResultTransformer delegate;
+
+    private long totalItems = -1;
+
+    /**
+     * count(*) over()窗口函数的结果转换器
+     *
+     * @param delegate 移除总记录数列后实际使用的ResultTransformer
+     */
+    public WindowCountTransformer(ResultTransformer delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 获取窗口函数返回的总记录数,查询结果为空时返回-1
+     *
+     * @return long
+     */
+    public long getTotalItems() {
+        return totalItems;
+    }
+
+    @Override
+    public Object transformTuple(Object[] tuple, String[] aliases) {
+        int index = ArrayUtils.indexOf(aliases, TOTAL_ALIAS);
+        if (index < 0) {
+            throw new IllegalArgumentException("查询结果中没有总记录数列" + TOTAL_ALIAS);
+        }
+
+        if (tuple[index] != null) {
+            totalItems = ((Number) tuple[index]).longValue();
+        }
+
+        return delegate.transformTuple(ArrayUtils.remove(tuple, index), ArrayUtils.remove(aliases, index));
+    }
+
+    @Override
+    public List transformList(List collection) {
+        return delegate.transformList(collection);
+    }
+}
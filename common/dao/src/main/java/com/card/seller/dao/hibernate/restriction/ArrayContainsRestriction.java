@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate.restriction;
+
+import com.card.seller.dao.hibernate.RestrictionNames;
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.Type;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+
+/**
+ * 数组包含约束 (from object o where ? = any(o.value) and ? = any(o.value)) RestrictionName:ACONTAINS
+ * <p>
+ * 表达式:ACONTAINS属性类型_属性名称[_OR_属性名称...],属性类型为数组元素的类型,多个值时要求全部包含.
+ * 生成的sql使用PostgreSQL的any(array)语法
+ * </p>
+ *
+ * @author vincent
+ */
+public class ArrayContainsRestriction extends CriterionMultipleValueSupport {
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.CriterionBuilder#getRestrictionName()
+     */
+    public String getRestrictionName() {
+        return RestrictionNames.ACONTAINS;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.restriction.CriterionMultipleValueSupport#buildRestriction(java.lang.String, java.lang.Object[])
+     */
+    public Criterion buildRestriction(String propertyName, Object[] values) {
+        Assert.notEmpty(values, "ACONTAINS约束的值不能为空");
+        return new ArrayContainsCriterion(propertyName, values);
+    }
+
+    /**
+     * 数组列包含全部值的条件,参数按元素类型绑定
+     */
+    private static class ArrayContainsCriterion implements Criterion {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String propertyName;
+        private final Object[] values;
+
+        private ArrayContainsCriterion(String propertyName, Object[] values) {
+            this.propertyName = propertyName;
+            this.values = values;
+        }
+
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            String[] columns = criteriaQuery.findColumns(propertyName, criteria);
+            if (columns.length != 1) {
+                throw new HibernateException("ACONTAINS约束只支持单列属性:" + propertyName);
+            }
+            StringBuilder sql = new StringBuilder("(");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    sql.append(" and ");
+                }
+                sql.append("? = any(").append(columns[0]).append(")");
+            }
+            return sql.append(")").toString();
+        }
+
+        public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            TypedValue[] typedValues = new TypedValue[values.length];
+            for (int i = 0; i < values.length; i++) {
+                Type type = criteriaQuery.getFactory().getTypeHelper().heuristicType(values[i].getClass().getName());
+                typedValues[i] = new TypedValue(type, values[i]);
+            }
+            return typedValues;
+        }
+
+        @Override
+        public String toString() {
+            return propertyName + " contains all " + Arrays.toString(values);
+        }
+    }
+
+}
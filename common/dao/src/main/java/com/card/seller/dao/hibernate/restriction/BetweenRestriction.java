@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate.restriction;
+
+import com.card.seller.dao.hibernate.RestrictionNames;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+
+/**
+ * 区间约束 (from object o where o.value between ? and ?) RestrictionName:BETWEEN
+ * <p>
+ * 表达式:BETWEEN属性类型_属性名称[_OR_属性名称...],值为"最小值,最大值"
+ * </p>
+ *
+ * @author vincent
+ */
+public class BetweenRestriction extends CriterionMultipleValueSupport {
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.CriterionBuilder#getRestrictionName()
+     */
+    public String getRestrictionName() {
+        return RestrictionNames.BETWEEN;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.restriction.CriterionMultipleValueSupport#buildRestriction(java.lang.String, java.lang.Object[])
+     */
+    public Criterion buildRestriction(String propertyName, Object[] values) {
+        if (values.length != 2) {
+            throw new IllegalArgumentException("BETWEEN约束需要两个值,当前值的个数为:" + values.length);
+        }
+        return Restrictions.between(propertyName, values[0], values[1]);
+    }
+
+}
@@ -15,9 +15,10 @@
  */
 package com.card.seller.dao.hibernate.restriction;
 
+import com.card.seller.dao.hibernate.BasicHibernateDao;
+import com.card.seller.dao.hibernate.InClauseSupport;
 import com.card.seller.dao.hibernate.RestrictionNames;
 import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.Restrictions;
 
 /**
  * 包含约束 (from object o where o.value in (?,?,?,?,?))RestrictionName:IN
@@ -29,6 +30,28 @@ import org.hibernate.criterion.Restrictions;
  */
 public class InRestriction extends CriterionMultipleValueSupport {
 
+    //每个in子句最多包含的值数量
+    private int chunkSize = BasicHibernateDao.IN_CLAUSE_SIZE;
+
+    /**
+     * 设置每个in子句最多包含的值数量,超过时拆分为多个in子句,每个子句的值补齐到固定的几档长度.
+     * 拆分后的子句仍在同一条语句中,补齐后的参数总数不能超过{@link InClauseSupport#MAX_PARAMETER_COUNT}
+     *
+     * @param chunkSize 分片大小
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 获取每个in子句最多包含的值数量
+     *
+     * @return int
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.exitsoft.orm.core.hibernate.CriterionBuilder#getRestrictionName()
@@ -42,7 +65,7 @@ public class InRestriction extends CriterionMultipleValueSupport {
      * @see org.exitsoft.orm.core.hibernate.restriction.CriterionMultipleValueSupport#buildRestriction(java.lang.String, java.lang.Object[])
      */
     public Criterion buildRestriction(String propertyName, Object[] values) {
-        return Restrictions.in(propertyName, values);
+        return InClauseSupport.in(propertyName, values, chunkSize);
     }
 
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate.restriction;
+
+import com.card.seller.dao.hibernate.CriterionBuilder;
+import com.card.seller.dao.hibernate.PropertyFilter;
+import com.card.seller.dao.hibernate.RestrictionNames;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Restrictions;
+
+/**
+ * 为空约束 (from object o where o.value is null) RestrictionName:NULL
+ * <p>
+ * 表达式:NULL属性类型_属性名称[_OR_属性名称...],值会被忽略
+ * </p>
+ *
+ * @author vincent
+ */
+public class NullRestriction implements CriterionBuilder {
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.CriterionBuilder#getRestrictionName()
+     */
+    public String getRestrictionName() {
+        return RestrictionNames.NULL;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.CriterionBuilder#build(org.exitsoft.orm.core.PropertyFilter)
+     */
+    public Criterion build(PropertyFilter filter) {
+        if (!filter.hasMultiplePropertyNames()) {
+            return build(filter.getSinglePropertyName(), null);
+        }
+        Disjunction disjunction = Restrictions.disjunction();
+        for (String propertyName : filter.getPropertyNames()) {
+            disjunction.add(build(propertyName, null));
+        }
+        return disjunction;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.exitsoft.orm.core.hibernate.CriterionBuilder#build(java.lang.String, java.lang.Object)
+     */
+    public Criterion build(String propertyName, Object value) {
+        return Restrictions.isNull(propertyName);
+    }
+
+}
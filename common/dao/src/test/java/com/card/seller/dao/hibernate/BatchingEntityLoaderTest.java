@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * 合并加载时每个调用方得到独立的对象,同时执行的批次数受限制
+ *
+ * @author vincent
+ */
+public class BatchingEntityLoaderTest extends HibernateDaoTestSupport {
+
+    private static final int THREADS = 8;
+
+    private BatchingEntityLoader<Member, Long> loader;
+
+    private Member member;
+
+    @Before
+    public void createLoader() {
+        loader = new BatchingEntityLoader<Member, Long>(sessionFactory, Member.class);
+        loader.setWindowMillis(20);
+        member = memberDao.findUniqueByProperty("name", "member07");
+    }
+
+    @Test
+    public void testEachCallerGetsOwnCopy() throws Exception {
+        List<Member> members = loadConcurrently(member.getId());
+
+        for (int i = 0; i < members.size(); i++) {
+            Member loaded = members.get(i);
+            assertEquals(member.getId(), loaded.getId());
+            assertEquals("member07", loaded.getName());
+            assertEquals(member.getRegisterTime().getTime(), loaded.getRegisterTime().getTime());
+            for (int j = 0; j < i; j++) {
+                assertNotSame(members.get(j), loaded);
+                assertNotSame(members.get(j).getRegisterTime(), loaded.getRegisterTime());
+            }
+        }
+        assertTrue(loader.getBatchCount() < THREADS);
+    }
+
+    @Test
+    public void testMissingId() {
+        assertNull(loader.load(-1L));
+    }
+
+    @Test
+    public void testMaxConcurrentBatches() throws Exception {
+        loader.setWindowMillis(0);
+        loader.setMaxConcurrentBatches(1);
+
+        for (Member loaded : loadConcurrently(member.getId())) {
+            assertEquals("member07", loaded.getName());
+        }
+    }
+
+    @Test
+    public void testGetInBatchIsDetachedWithLoader() {
+        assertTrue(sessionFactory.getCurrentSession().contains(memberDao.getInBatch(member.getId())));
+
+        memberDao.setBatchingEntityLoader(loader);
+        Member loaded = memberDao.getInBatch(member.getId());
+        assertNotSame(member, loaded);
+        assertFalse(sessionFactory.getCurrentSession().contains(loaded));
+    }
+
+    /**
+     * 多个线程同时按主键加载
+     */
+    private List<Member> loadConcurrently(final Long id) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Member>> futures = new ArrayList<Future<Member>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<Member>() {
+                    @Override
+                    public Member call() throws Exception {
+                        start.await();
+                        return loader.load(id);
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Member> members = new ArrayList<Member>();
+            for (Future<Member> future : futures) {
+                members.add(future.get());
+            }
+            return members;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
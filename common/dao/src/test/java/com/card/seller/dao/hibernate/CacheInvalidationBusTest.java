@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import com.card.seller.domain.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 使用本地PostgreSQL测试两个节点之间通过LISTEN/NOTIFY投递失效消息.连接不上时跳过,
+ * 连接参数可以通过系统属性test.postgresql.url、test.postgresql.user、test.postgresql.password指定
+ *
+ * @author vincent
+ */
+public class CacheInvalidationBusTest {
+
+    private static final String URL = System.getProperty("test.postgresql.url", "jdbc:postgresql://localhost:5432/postgres");
+    private static final String USER = System.getProperty("test.postgresql.user", "postgres");
+    private static final String PASSWORD = System.getProperty("test.postgresql.password", "");
+
+    private static final String CHANNEL = "cache_invalidation_test";
+    private static final long POLL_INTERVAL = 50;
+    private static final long TIMEOUT = 5000;
+
+    private SessionFactory sessionFactory;
+    private CacheInvalidationBus publisher;
+    private CacheInvalidationBus receiver;
+    private BlockingQueue<String> received;
+    private BlockingQueue<String> echoed;
+    private BlockingQueue<String> events;
+
+    @Before
+    public void startBuses() {
+        Connection connection = null;
+        try {
+            connection = DriverManager.getConnection(URL, USER, PASSWORD);
+        } catch (SQLException e) {
+            Assume.assumeNoException(e);
+        } finally {
+            close(connection);
+        }
+
+        Configuration configuration = new Configuration()
+                .setProperty(Environment.DRIVER, "org.postgresql.Driver")
+                .setProperty(Environment.URL, URL)
+                .setProperty(Environment.USER, USER)
+                .setProperty(Environment.PASS, PASSWORD)
+                .setProperty(Environment.DIALECT, PostgreSQL82Dialect.class.getName())
+                .setProperty(Environment.USE_SECOND_LEVEL_CACHE, "false")
+                .addAnnotatedClass(Member.class)
+                .addAnnotatedClass(User.class);
+        sessionFactory = configuration.buildSessionFactory(new ServiceRegistryBuilder().applySettings(configuration.getProperties()).buildServiceRegistry());
+
+        received = new LinkedBlockingQueue<String>();
+        echoed = new LinkedBlockingQueue<String>();
+        events = new LinkedBlockingQueue<String>();
+        receiver = createBus(received);
+        publisher = createBus(echoed);
+        receiver.addEventListener(new CacheEventListener() {
+            @Override
+            public void onEvent(String event, List<String> values) {
+                events.add(event + ":" + values);
+            }
+
+            @Override
+            public void onReconnect() {
+            }
+        });
+    }
+
+    @After
+    public void stopBuses() {
+        if (receiver != null) {
+            receiver.destroy();
+            publisher.destroy();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    public void testDeliverAfterCommit() throws Exception {
+        publish(Member.class.getName(), Arrays.asList(1L, 2L), true);
+
+        assertEquals(Member.class.getName() + ":[1, 2]", received.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        //发布者忽略自己的消息
+        assertNull(echoed.poll(POLL_INTERVAL * 4, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDiscardOnRollback() throws Exception {
+        publish(Member.class.getName(), Arrays.asList(1L), false);
+        publish(User.class.getName(), null, true);
+
+        //回滚的消息不会投递,第一条收到的是之后提交的消息
+        assertEquals(User.class.getName() + ":null", received.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(received.poll(POLL_INTERVAL * 4, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testEvictAll() throws Exception {
+        publish(CacheInvalidationBus.ALL_ENTITIES, null, true);
+
+        String first = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        String second = received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertTrue(Arrays.asList(first, second).containsAll(Arrays.asList(Member.class.getName() + ":null", User.class.getName() + ":null")));
+    }
+
+    @Test
+    public void testEvent() throws Exception {
+        Thread.sleep(POLL_INTERVAL * 10);
+        Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+        try {
+            connection.setAutoCommit(false);
+            publisher.publishEvent(connection, "member_inserted", Arrays.asList("a,b|c%d", "张三"));
+            connection.commit();
+        } finally {
+            close(connection);
+        }
+
+        //事件内容中的分隔符不影响拆分,事件不通知缓存失效监听
+        assertEquals("member_inserted:[a,b|c%d, 张三]", events.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(received.poll(POLL_INTERVAL * 4, TimeUnit.MILLISECONDS));
+    }
+
+    private CacheInvalidationBus createBus(final BlockingQueue<String> messages) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USER, PASSWORD);
+
+        CacheInvalidationBus bus = new CacheInvalidationBus();
+        bus.setSessionFactory(sessionFactory);
+        bus.setDataSource(dataSource);
+        bus.setChannel(CHANNEL);
+        bus.setPollInterval(POLL_INTERVAL);
+        bus.addListener(new CacheInvalidationListener() {
+            @Override
+            public void onInvalidate(String entityName, List<Serializable> ids) {
+                messages.add(entityName + ":" + ids);
+            }
+        });
+        bus.afterPropertiesSet();
+        return bus;
+    }
+
+    /**
+     * 在publisher的事务中发布消息,等待receiver开始监听后提交或回滚
+     */
+    private void publish(String entityName, List<Long> ids, boolean commit) throws Exception {
+        Thread.sleep(POLL_INTERVAL * 10);
+        Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+        try {
+            connection.setAutoCommit(false);
+            publisher.publish(connection, entityName, ids);
+            if (commit) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+        } finally {
+            close(connection);
+        }
+    }
+
+    private static void close(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
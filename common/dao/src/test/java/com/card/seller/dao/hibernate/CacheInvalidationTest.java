@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import com.card.seller.domain.User;
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 批量HQL/SQL修改时按语句实际修改的实体发布失效消息
+ *
+ * @author vincent
+ */
+public class CacheInvalidationTest extends HibernateDaoTestSupport {
+
+    private RecordingBus bus;
+
+    @Before
+    public void setBus() {
+        bus = new RecordingBus();
+        memberDao.setCacheInvalidationBus(bus);
+    }
+
+    @Test
+    public void testAffectedEntityNames() {
+        assertEquals(Collections.singleton(Member.class.getName()), memberDao.getAffectedEntityNames("update Member set balance = balance"));
+        assertEquals(Collections.singleton(User.class.getName()), memberDao.getAffectedEntityNames("delete from User where id = 0"));
+    }
+
+    @Test
+    public void testHqlUpdateOfOwnEntity() {
+        memberDao.executeUpdate("update Member set balance = balance where name = ?", "member01");
+
+        assertEquals(Arrays.asList(Member.class.getName() + ":null"), bus.messages);
+    }
+
+    @Test
+    public void testHqlUpdateOfOtherEntity() {
+        memberDao.executeUpdate("update User set salt = :salt where id = :id", "salt", 0L);
+
+        assertEquals(Arrays.asList(User.class.getName() + ":null"), bus.messages);
+    }
+
+    @Test
+    public void testSqlUpdateWithEntityClasses() {
+        memberDao.executeSQLUpdate("update users set salt = 'salt' where id = 0", null, User.class);
+
+        assertEquals(Arrays.asList(User.class.getName() + ":null"), bus.messages);
+    }
+
+    @Test
+    public void testSqlUpdateWithoutQuerySpaces() {
+        memberDao.executeSQLUpdate("update member set balance = balance where id = 0", null);
+
+        assertEquals(Arrays.asList(CacheInvalidationBus.ALL_ENTITIES + ":null"), bus.messages);
+    }
+
+    /**
+     * 只记录发布的消息,不连接PostgreSQL
+     */
+    private static class RecordingBus extends CacheInvalidationBus {
+
+        private final List<String> messages = new ArrayList<String>();
+
+        @Override
+        public void publish(Session session, String entityName, Collection<? extends Serializable> ids) {
+            messages.add(entityName + ":" + ids);
+        }
+    }
+}
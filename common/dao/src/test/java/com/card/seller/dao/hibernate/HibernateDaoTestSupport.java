@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import com.card.seller.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.service.ServiceRegistryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * DAO测试基类.使用H2内存数据库创建member和users表,在member表中写入固定的测试数据,同一JVM中的测试类共用SessionFactory和测试数据,
+ * 每个测试在独立的事务中执行,结束后回滚
+ *
+ * @author vincent
+ */
+public abstract class HibernateDaoTestSupport {
+
+    /**
+     * 测试数据的会员个数
+     */
+    protected static final int MEMBER_COUNT = 60;
+
+    protected static SessionFactory sessionFactory;
+
+    protected HibernateSupportDao<Member, Long> memberDao;
+
+    @BeforeClass
+    public static void createSessionFactory() {
+        if (sessionFactory != null) {
+            return;
+        }
+        Configuration configuration = new Configuration()
+                .setProperty(Environment.DRIVER, "org.h2.Driver")
+                .setProperty(Environment.URL, "jdbc:h2:mem:dao;DB_CLOSE_DELAY=-1")
+                .setProperty(Environment.USER, "sa")
+                .setProperty(Environment.DIALECT, H2Dialect.class.getName())
+                .setProperty(Environment.HBM2DDL_AUTO, "create")
+                .setProperty(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread")
+                .setProperty(Environment.USE_SECOND_LEVEL_CACHE, "false")
+                .addAnnotatedClass(Member.class)
+                .addAnnotatedClass(User.class);
+        sessionFactory = configuration.buildSessionFactory(new ServiceRegistryBuilder().applySettings(configuration.getProperties()).buildServiceRegistry());
+
+        Session session = sessionFactory.openSession();
+        try {
+            session.beginTransaction();
+            for (Member member : createMembers()) {
+                session.save(member);
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    @Before
+    public void beginTransaction() {
+        memberDao = new HibernateSupportDao<Member, Long>(Member.class);
+        memberDao.setSessionFactory(sessionFactory);
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    @After
+    public void rollbackTransaction() {
+        sessionFactory.getCurrentSession().getTransaction().rollback();
+    }
+
+    /**
+     * 测试数据:name为member00..member59,phone每3个会员重复一次,lastLoginIp偶数会员为null,
+     * realName按张/李/王循环并带编号
+     */
+    private static List<Member> createMembers() {
+        String[] surnames = {"张", "李", "王"};
+        List<Member> members = new ArrayList<Member>();
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            Member member = new Member();
+            member.setName(String.format("member%02d", i));
+            member.setPwd("pwd");
+            member.setRealPwd("pwd");
+            member.setSalt("salt");
+            member.setPhone("1380000" + (i % 20 / 3));
+            member.setRealName(surnames[i % 3] + i);
+            member.setIdentity(i % 5 == 0 ? "id_" + i : "id" + i);
+            member.setBalance(new BigDecimal(i * 10));
+            member.setRegisterTime(new Date(1400000000000L + i * 86400000L));
+            member.setLastLoginIp(i % 2 == 0 ? null : "10.0.0." + i);
+            members.add(member);
+        }
+        return members;
+    }
+
+    /**
+     * 按表达式与值创建属性过滤器列表
+     *
+     * @param expressionAndValues 表达式1,值1,表达式2,值2...
+     * @return List
+     */
+    protected static List<PropertyFilter> filters(String... expressionAndValues) {
+        List<PropertyFilter> filters = new ArrayList<PropertyFilter>();
+        for (int i = 0; i < expressionAndValues.length; i += 2) {
+            filters.add(PropertyFilters.build(expressionAndValues[i], expressionAndValues[i + 1]));
+        }
+        return filters;
+    }
+
+    /**
+     * 获取会员的主键,按主键排序
+     *
+     * @param members 会员
+     * @return List
+     */
+    protected static List<Long> ids(Collection<Member> members) {
+        List<Long> ids = new ArrayList<Long>();
+        for (Member member : members) {
+            ids.add(member.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+}
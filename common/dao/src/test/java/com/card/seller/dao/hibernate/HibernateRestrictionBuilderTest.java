@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.hibernate.criterion.Criterion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link HibernateRestrictionBuilder}约束快照的并发测试:并发注册约束时,读线程看到的快照始终完整,注册不会丢失
+ *
+ * @author vincent
+ */
+public class HibernateRestrictionBuilderTest {
+
+    private static final int WRITER_COUNT = 4;
+    private static final int READER_COUNT = 4;
+    private static final int REGISTER_COUNT = 500;
+
+    private Map<String, CriterionBuilder> defaults;
+
+    @Before
+    public void saveDefaults() {
+        defaults = HibernateRestrictionBuilder.getCriterionBuilders();
+        assertEquals(15, defaults.size());
+    }
+
+    @After
+    public void restoreDefaults() {
+        HibernateRestrictionBuilder.setCriterionBuilders(defaults);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsUnmodifiable() {
+        HibernateRestrictionBuilder.getCriterionBuilders().put("TEST", new TestCriterionBuilder("TEST"));
+    }
+
+    @Test
+    public void testSetCriterionBuildersCopiesArgument() {
+        Map<String, CriterionBuilder> builders = new HashMap<String, CriterionBuilder>(defaults);
+        HibernateRestrictionBuilder.setCriterionBuilders(builders);
+        builders.put("TEST", new TestCriterionBuilder("TEST"));
+
+        assertFalse(HibernateRestrictionBuilder.getCriterionBuilders().containsKey("TEST"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingRestriction() {
+        HibernateRestrictionBuilder.getCriterionBuilder("MISSING");
+    }
+
+    @Test
+    public void testConcurrentRegisterAndLookup() throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(WRITER_COUNT);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Queue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int w = 0; w < WRITER_COUNT; w++) {
+            final int writer = w;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < REGISTER_COUNT; i++) {
+                            HibernateRestrictionBuilder.register(new TestCriterionBuilder("STRESS" + writer + "_" + i));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    } finally {
+                        writersDone.countDown();
+                    }
+                }
+            }));
+        }
+        for (int r = 0; r < READER_COUNT; r++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        int lastSize = 0;
+                        while (running.get()) {
+                            for (String name : defaults.keySet()) {
+                                assertSame(defaults.get(name), HibernateRestrictionBuilder.getCriterionBuilder(name));
+                            }
+                            Map<String, CriterionBuilder> snapshot = HibernateRestrictionBuilder.getCriterionBuilders();
+                            assertTrue("快照缺少默认约束", snapshot.keySet().containsAll(defaults.keySet()));
+                            assertTrue("快照不应该变小", snapshot.size() >= lastSize);
+                            lastSize = snapshot.size();
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        writersDone.await();
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.peek());
+        }
+        Map<String, CriterionBuilder> snapshot = HibernateRestrictionBuilder.getCriterionBuilders();
+        assertEquals(defaults.size() + WRITER_COUNT * REGISTER_COUNT, snapshot.size());
+        for (int w = 0; w < WRITER_COUNT; w++) {
+            for (int i = 0; i < REGISTER_COUNT; i++) {
+                assertTrue(snapshot.containsKey("STRESS" + w + "_" + i));
+            }
+        }
+    }
+
+    private static class TestCriterionBuilder implements CriterionBuilder {
+
+        private final String restrictionName;
+
+        private TestCriterionBuilder(String restrictionName) {
+            this.restrictionName = restrictionName;
+        }
+
+        @Override
+        public Criterion build(PropertyFilter filter) {
+            return null;
+        }
+
+        @Override
+        public String getRestrictionName() {
+            return restrictionName;
+        }
+
+        @Override
+        public Criterion build(String propertyName, Object value) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * in子句分片补齐及单条语句参数个数上限
+ *
+ * @author vincent
+ */
+public class InClauseSupportTest extends HibernateDaoTestSupport {
+
+    @Test
+    public void testPartition() {
+        List<List<Integer>> chunks = InClauseSupport.partition(Arrays.asList(1, 2, 3, 4, 5, 6, 7), 4);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), chunks.get(0));
+        assertEquals(Arrays.asList(5, 6, 7, 7), chunks.get(1));
+    }
+
+    @Test
+    public void testParameterCount() {
+        assertEquals(1, InClauseSupport.getParameterCount(1, 500));
+        assertEquals(500, InClauseSupport.getParameterCount(500, 500));
+        assertEquals(500 + 16, InClauseSupport.getParameterCount(510, 500));
+        assertEquals(1000, InClauseSupport.getParameterCount(1000, 500));
+    }
+
+    @Test
+    public void testParameterCountLimit() {
+        InClauseSupport.checkParameterCount(InClauseSupport.MAX_PARAMETER_COUNT, BasicHibernateDao.IN_CLAUSE_SIZE);
+        try {
+            //实际值个数未超过上限,但最后一个分片520个值补齐到700后超过上限
+            InClauseSupport.checkParameterCount(29920, 700);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("30100"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInOverLimit() {
+        InClauseSupport.in("id", values(InClauseSupport.MAX_PARAMETER_COUNT + 1), BasicHibernateDao.IN_CLAUSE_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotInOverLimit() {
+        InClauseSupport.notIn("id", values(InClauseSupport.MAX_PARAMETER_COUNT + 1), BasicHibernateDao.IN_CLAUSE_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompiledFilterOverLimit() {
+        memberDao.setCompileFilters(true);
+        StringBuilder builder = new StringBuilder();
+        for (Object value : values(InClauseSupport.MAX_PARAMETER_COUNT + 1)) {
+            builder.append(value).append(',');
+        }
+        builder.deleteCharAt(builder.length() - 1);
+
+        memberDao.findByPropertyFilter(filters("INL_id", builder.toString()));
+    }
+
+    @Test
+    public void testGetByIdsSplitsStatements() {
+        //按主键列表查询时每个分片是独立的语句,不受单条语句上限限制
+        List<Long> ids = new ArrayList<Long>();
+        for (long i = 0; i < InClauseSupport.MAX_PARAMETER_COUNT + 1; i++) {
+            ids.add(i);
+        }
+        assertEquals(MEMBER_COUNT, memberDao.get(ids).size());
+    }
+
+    private static Object[] values(int size) {
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = (long) i;
+        }
+        return values;
+    }
+}
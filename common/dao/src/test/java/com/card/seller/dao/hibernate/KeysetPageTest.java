@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Order;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * keyset分页逐页翻页的结果与按相同排序一次查询的结果一致,以及游标条件的形式和排序字段的限制
+ *
+ * @author vincent
+ */
+public class KeysetPageTest extends HibernateDaoTestSupport {
+
+    @Test
+    public void testCriteriaPages() {
+        assertSameAsOrderedList("phone", "asc", false);
+        assertSameAsOrderedList("phone,name", "asc,desc", false);
+        assertSameAsOrderedList("registerTime", "desc", false);
+    }
+
+    @Test
+    public void testHqlPages() {
+        assertSameAsOrderedList("phone", "asc", true);
+        assertSameAsOrderedList("phone,name", "desc,asc", true);
+        assertSameAsOrderedList("realName", "desc", true);
+    }
+
+    @Test
+    public void testRowValueCursor() {
+        HibernateSupportDao<Member, Long> rowValueDao = new HibernateSupportDao<Member, Long>(Member.class) {
+            @Override
+            protected boolean isRowValueKeyset(List<PageRequest.Sort> sorts) {
+                return true;
+            }
+        };
+        rowValueDao.setSessionFactory(sessionFactory);
+        List<PageRequest.Sort> sorts = rowValueDao.createKeysetCursor(request("phone", "asc")).getSorts();
+
+        assertEquals("from Member where ((phone, id) > (:__k0, :__k1)) order by phone asc, id asc",
+                rowValueDao.setKeysetToHql("from Member", sorts, true));
+        assertSameAsOrderedList(rowValueDao, "phone", "asc", true);
+        assertSameAsOrderedList(rowValueDao, "phone", "desc", false);
+    }
+
+    @Test
+    public void testLeadingBoundCursor() {
+        List<PageRequest.Sort> sorts = memberDao.createKeysetCursor(request("phone,name", "asc,desc")).getSorts();
+
+        assertFalse(memberDao.isRowValueKeyset(sorts));
+        assertEquals("from Member where (phone >= :__k0 and ((phone > :__k0) or (phone = :__k0 and name < :__k1)"
+                        + " or (phone = :__k0 and name = :__k1 and id < :__k2))) order by phone asc, name desc, id desc",
+                memberDao.setKeysetToHql("from Member", sorts, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullableSortProperty() {
+        memberDao.findPage(request("lastLoginTime", "asc"), memberDao.createCriteria());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProjection() {
+        memberDao.findPage(request("phone", "asc"), "select m.name from Member m");
+    }
+
+    /**
+     * 逐页翻页直到没有下一页,结果与按相同排序一次查询的结果一致
+     */
+    private void assertSameAsOrderedList(String orderBy, String orderDir, boolean hql) {
+        assertSameAsOrderedList(memberDao, orderBy, orderDir, hql);
+    }
+
+    private static void assertSameAsOrderedList(HibernateSupportDao<Member, Long> dao, String orderBy, String orderDir, boolean hql) {
+        PageRequest request = request(orderBy, orderDir);
+        List<PageRequest.Sort> sorts = dao.createKeysetCursor(request).getSorts();
+
+        Criteria criteria = dao.createCriteria();
+        for (PageRequest.Sort sort : sorts) {
+            criteria.addOrder(PageRequest.Sort.DESC.equals(sort.getDir()) ? Order.desc(sort.getProperty()) : Order.asc(sort.getProperty()));
+        }
+        List<Long> expected = new ArrayList<Long>();
+        for (Object member : criteria.list()) {
+            expected.add(((Member) member).getId());
+        }
+
+        List<Long> actual = new ArrayList<Long>();
+        Page<Member> page;
+        do {
+            page = hql ? dao.<Member>findPage(request, "from Member") : dao.findPage(request, dao.createCriteria());
+            for (Member member : page.getResult()) {
+                actual.add(member.getId());
+            }
+            request.setCursor(page.getNextCursor());
+        } while (page.isHasMore());
+
+        assertEquals(orderBy + " " + orderDir, expected, actual);
+    }
+
+    private static PageRequest request(String orderBy, String orderDir) {
+        PageRequest request = new PageRequest(1, 7);
+        request.setCountTotal(false);
+        request.setKeyset(true);
+        request.setOrderBy(orderBy);
+        request.setOrderDir(orderDir);
+        return request;
+    }
+}
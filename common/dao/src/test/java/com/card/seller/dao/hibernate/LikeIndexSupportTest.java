@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Junction;
+import org.hibernate.criterion.SimpleExpression;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LikeIndexSupport}的前缀上界计算,以及无法改写为范围查询时保持原来的like
+ *
+ * @author vincent
+ */
+public class LikeIndexSupportTest {
+
+    private final LikeIndexSupport likeIndexSupport = new LikeIndexSupport(Member.class);
+
+    @Test
+    public void testNextPrefix() {
+        assertEquals("abd", LikeIndexSupport.nextPrefix("abc"));
+        assertEquals("13800001", LikeIndexSupport.nextPrefix("13800000"));
+        assertEquals("张4", LikeIndexSupport.nextPrefix("张3"));
+        assertEquals("a\uD7FF", LikeIndexSupport.nextPrefix("a\uD7FE"));
+    }
+
+    @Test
+    public void testNextPrefixWithoutUpperBound() {
+        assertNull(LikeIndexSupport.nextPrefix(""));
+        //加1后是代理字符
+        assertNull(LikeIndexSupport.nextPrefix("a\uD7FF"));
+        assertNull(LikeIndexSupport.nextPrefix("a\uFFFF"));
+        //以补充字符结尾
+        assertNull(LikeIndexSupport.nextPrefix("a\uD83D\uDE00"));
+    }
+
+    @Test
+    public void testIsAccelerated() {
+        assertTrue(likeIndexSupport.isAccelerated(PropertyFilters.build("RLIKES_name", "abc")));
+        assertTrue(likeIndexSupport.isAccelerated(PropertyFilters.build("RLIKES_name_OR_phone", "abc")));
+        assertFalse(likeIndexSupport.isAccelerated(PropertyFilters.build("RLIKES_identity", "abc")));
+        assertFalse(likeIndexSupport.isAccelerated(PropertyFilters.build("RLIKES_name_OR_identity", "abc")));
+        assertFalse(likeIndexSupport.isAccelerated(PropertyFilters.build("LIKES_name", "abc")));
+    }
+
+    @Test
+    public void testCreateRangeCriterion() {
+        assertFalse(createSingleCriterion("abc") instanceof SimpleExpression);
+        assertFalse(createSingleCriterion("张") instanceof SimpleExpression);
+    }
+
+    @Test
+    public void testFallbackToLike() {
+        assertTrue(createSingleCriterion("a%c") instanceof SimpleExpression);
+        assertTrue(createSingleCriterion("a_c") instanceof SimpleExpression);
+        assertTrue(createSingleCriterion("a\\c") instanceof SimpleExpression);
+        assertTrue(createSingleCriterion("a\uD7FF") instanceof SimpleExpression);
+        assertTrue(createSingleCriterion("a\uD83D\uDE00") instanceof SimpleExpression);
+    }
+
+    /**
+     * 创建单个值单个属性的RLIKE约束,返回改写后的条件
+     */
+    private Criterion createSingleCriterion(String value) {
+        Criterion criterion = likeIndexSupport.createCriterion(PropertyFilters.build("RLIKES_name", value));
+        assertTrue(criterion instanceof Junction);
+
+        Iterator<Criterion> conditions = ((Junction) criterion).conditions().iterator();
+        Criterion result = conditions.next();
+        assertFalse(conditions.hasNext());
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Benchmark;
+import com.card.seller.domain.Benchmarks;
+import com.card.seller.domain.Member;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PropertyFilterCompiler}生成的HQL与Criteria的查询结果一致,不同值个数的过滤器复用HQL形状,以及两者的CPU开销对比
+ *
+ * @author vincent
+ */
+public class PropertyFilterCompilerTest extends HibernateDaoTestSupport {
+
+    @Test
+    public void testEq() {
+        assertSameResult(filters("EQS_name", "member03"));
+        assertSameResult(filters("EQL_id", "5"));
+    }
+
+    @Test
+    public void testEqNull() {
+        assertSameResult(filters("EQS_lastLoginIp", "null"));
+        assertSameResult(filters("NES_lastLoginIp", "null"));
+    }
+
+    @Test
+    public void testNe() {
+        assertSameResult(filters("NES_phone", "13800001"));
+    }
+
+    @Test
+    public void testComparison() {
+        assertSameResult(filters("GEL_id", "10", "LTL_id", "20"));
+        assertSameResult(filters("GTL_id", "10", "LEL_id", "20"));
+    }
+
+    @Test
+    public void testOrValues() {
+        assertSameResult(filters("EQS_name", "member01|member02|member40"));
+        assertSameResult(filters("EQS_lastLoginIp", "null|10.0.0.1"));
+    }
+
+    @Test
+    public void testAndValues() {
+        assertSameResult(filters("NES_phone", "13800001,13800002"));
+    }
+
+    @Test
+    public void testMultipleProperties() {
+        assertSameResult(filters("EQS_name_OR_phone", "member01|13800002"));
+        assertSameResult(filters("LIKES_name_OR_realName", "张1"));
+    }
+
+    @Test
+    public void testLike() {
+        assertSameResult(filters("LIKES_realName", "1"));
+        assertSameResult(filters("LLIKES_name", "9"));
+        assertSameResult(filters("RLIKES_identity", "id_"));
+    }
+
+    @Test
+    public void testIn() {
+        assertSameResult(filters("INS_name", "member01,member02,member03"));
+        assertSameResult(filters("INL_id", "1,2,3,4,5,6,7"));
+    }
+
+    @Test
+    public void testNin() {
+        assertSameResult(filters("NINS_name", "member01,member02,member03"));
+        //lastLoginIp为null的记录在SQL中既不满足in也不满足not in
+        assertSameResult(filters("NINS_lastLoginIp", "10.0.0.1,10.0.0.3"));
+    }
+
+    @Test
+    public void testInChunks() {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < BasicHibernateDao.IN_CLAUSE_SIZE + 10; i++) {
+            values.append(i).append(',');
+        }
+        values.deleteCharAt(values.length() - 1);
+        assertSameResult(filters("INL_id", values.toString()));
+        assertSameResult(filters("NINL_id", values.toString()));
+    }
+
+    @Test
+    public void testShapeCacheAcrossValueCounts() {
+        PropertyFilterCompiler compiler = new PropertyFilterCompiler(Member.class.getName());
+
+        //3个和4个值都补齐到4个参数,共用一个HQL形状
+        PropertyFilterCompiler.CompiledFilter three = compiler.compile(filters("INS_name", "member01,member02,member03"));
+        PropertyFilterCompiler.CompiledFilter four = compiler.compile(filters("INS_name", "member04,member05,member06,member07"));
+        assertSame(three.getQueryString(), four.getQueryString());
+        assertEquals(1, compiler.getTemplateCacheStats().hitCount());
+        assertEquals(1, compiler.getTemplateCacheStats().missCount());
+        assertEquals(4, ((List<?>) three.getValues().get("f0_0")).size());
+
+        //补齐的值不影响结果
+        List<Member> members = memberDao.createQuery(three.getQueryString(), three.getValues()).list();
+        assertEquals(ids(memberDao.createCriteria(filters("INS_name", "member01,member02,member03")).list()), ids(members));
+
+        //5个值补齐到8个参数,是新的形状,Hibernate展开集合参数后的SQL不同
+        PropertyFilterCompiler.CompiledFilter five = compiler.compile(filters("INS_name", "member01,member02,member03,member04,member05"));
+        assertEquals(8, ((List<?>) five.getValues().get("f0_0")).size());
+        assertEquals(2, compiler.getTemplateCacheStats().missCount());
+
+        //单值约束只有值的个数和null影响形状
+        String or = compiler.compile(filters("EQS_name", "member01|member02")).getQueryString();
+        assertSame(or, compiler.compile(filters("EQS_name", "member03|member04")).getQueryString());
+        assertFalse(or.equals(compiler.compile(filters("EQS_name", "member03|member04|member05")).getQueryString()));
+        assertFalse(or.equals(compiler.compile(filters("EQS_name", "member03|null")).getQueryString()));
+        assertEquals(2, compiler.getTemplateCacheStats().hitCount());
+    }
+
+    @Test
+    public void testFindPageWithIn() {
+        memberDao.setCompileFilters(true);
+        PageRequest request = new PageRequest(1, 2);
+        List<PropertyFilter> filters = filters("INS_name", "member01,member02,member03", "NINL_id", "0");
+
+        Page<Member> page = memberDao.findPage(request, filters);
+
+        assertEquals(3, page.getTotalItems());
+        assertEquals(2, page.getResult().size());
+    }
+
+    @Test
+    @Category(Benchmarks.class)
+    public void testBenchmark() {
+        final List<PropertyFilter> filters = filters("INS_name", "member01,member02,member03", "EQS_lastLoginIp", "null|10.0.0.1",
+                "LIKES_realName", "1", "GEL_id", "0");
+        final PropertyFilterCompiler compiler = memberDao.getFilterCompiler();
+        assertSameResult(filters);
+
+        double criteria = Benchmark.measure("PropertyFilter -> Criteria list", 500, 2000, new Runnable() {
+            @Override
+            public void run() {
+                memberDao.createCriteria(filters).list();
+            }
+        });
+        double compiled = Benchmark.measure("PropertyFilter -> compiled HQL list", 500, 2000, new Runnable() {
+            @Override
+            public void run() {
+                PropertyFilterCompiler.CompiledFilter compiledFilter = compiler.compile(filters);
+                memberDao.createQuery(compiledFilter.getQueryString(), compiledFilter.getValues()).list();
+            }
+        });
+        Benchmark.compare("compiled HQL vs Criteria", criteria, compiled);
+    }
+
+    private void assertSameResult(List<PropertyFilter> filters) {
+        PropertyFilterCompiler.CompiledFilter compiled = memberDao.getFilterCompiler().compile(filters);
+        assertNotNull("过滤器应该可以编译", compiled);
+
+        List<Member> expected = memberDao.createCriteria(filters).list();
+        List<Member> actual = memberDao.createQuery(compiled.getQueryString(), compiled.getValues()).list();
+
+        assertEquals(compiled.getQueryString(), ids(expected), ids(actual));
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PropertyFilterPredicate}在内存中的过滤结果与数据库查询结果一致,包括字符串排序、不同数字类型的比较和in列表中的null
+ *
+ * @author vincent
+ */
+public class PropertyFilterPredicateTest extends HibernateDaoTestSupport {
+
+    private List<Member> members;
+
+    @Before
+    public void loadMembers() {
+        members = memberDao.getAll();
+        assertEquals(MEMBER_COUNT, members.size());
+    }
+
+    @Test
+    public void testEq() {
+        assertSameResult(filters("EQS_name", "member03"));
+        assertSameResult(filters("EQL_id", "5"));
+    }
+
+    @Test
+    public void testNull() {
+        assertSameResult(filters("EQS_lastLoginIp", "null"));
+        assertSameResult(filters("NES_lastLoginIp", "null"));
+    }
+
+    @Test
+    public void testNe() {
+        //lastLoginIp为null的记录在SQL中不满足<>
+        assertSameResult(filters("NES_lastLoginIp", "10.0.0.1"));
+        assertSameResult(filters("NES_phone", "13800001"));
+    }
+
+    @Test
+    public void testComparison() {
+        assertSameResult(filters("GEL_id", "10", "LTL_id", "20"));
+        assertSameResult(filters("GTL_id", "10", "LEL_id", "20"));
+        assertSameResult(filters("GES_name", "member50"));
+    }
+
+    @Test
+    public void testIn() {
+        assertSameResult(filters("INS_name", "member01,member02,member03"));
+        assertSameResult(filters("INL_id", "1,2,3,4,5,6,7"));
+    }
+
+    @Test
+    public void testNin() {
+        assertSameResult(filters("NINS_name", "member01,member02,member03"));
+        //lastLoginIp为null的记录在SQL中既不满足in也不满足not in
+        assertSameResult(filters("NINS_lastLoginIp", "10.0.0.1,10.0.0.3"));
+    }
+
+    @Test
+    public void testLike() {
+        assertSameResult(filters("LIKES_realName", "1"));
+        assertSameResult(filters("LLIKES_name", "9"));
+        assertSameResult(filters("RLIKES_identity", "id_"));
+        assertSameResult(filters("LIKES_lastLoginIp", "0.0.1"));
+    }
+
+    @Test
+    public void testOrValues() {
+        assertSameResult(filters("EQS_name", "member01|member02|member40"));
+        assertSameResult(filters("EQS_lastLoginIp", "null|10.0.0.1"));
+        assertSameResult(filters("LIKES_realName", "张|5"));
+    }
+
+    @Test
+    public void testAndValues() {
+        assertSameResult(filters("NES_phone", "13800001,13800002"));
+        assertSameResult(filters("LIKES_realName", "张,1"));
+    }
+
+    @Test
+    public void testMultipleProperties() {
+        assertSameResult(filters("EQS_name_OR_phone", "member01|13800002"));
+        assertSameResult(filters("LIKES_name_OR_realName", "张1"));
+        assertSameResult(filters("EQS_lastLoginIp_OR_name", "null"));
+    }
+
+    @Test
+    public void testEmptyFilters() {
+        assertSameResult(new ArrayList<PropertyFilter>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedRestriction() {
+        PropertyFilterPredicate.compile(Member.class, filters("BETWEENL_id", "1,5"));
+    }
+
+    @Test
+    public void testParallelFilter() {
+        List<Member> items = new ArrayList<Member>();
+        while (items.size() <= PropertyFilterPredicate.PARALLEL_THRESHOLD * 4) {
+            items.addAll(members);
+        }
+        PropertyFilterPredicate<Member> predicate = PropertyFilterPredicate.compile(Member.class,
+                filters("LIKES_realName", "1", "EQS_lastLoginIp", "null|10.0.0.1"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(predicate.filter(items), predicate.filter(items, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStringOrdering() {
+        //大写字母、下划线、中文和全角字符按UTF-16代码单元比较,与二进制排序规则(H2默认、PostgreSQL的C排序规则)一致
+        addMember("Member99", "阿1");
+        addMember("member5", "赵2");
+        addMember("member_9", "李");
+        addMember("成员01", "王");
+        addMember("\uff4dember01", "Zhang");
+        members = memberDao.getAll();
+
+        assertSameResult(filters("GES_name", "member50"));
+        assertSameResult(filters("LTS_name", "member10"));
+        assertSameResult(filters("GTS_name", "Member"));
+        assertSameResult(filters("LES_name", "member5"));
+        assertSameResult(filters("GES_realName", "李"));
+        assertSameResult(filters("LTS_realName", "王5"));
+    }
+
+    @Test
+    public void testMixedNumericTypes() {
+        //id为Long,过滤值为Integer时按数值比较,与类型一致的数据库查询结果相同
+        assertSameIds(filters("EQL_id", "5"), filters("EQI_id", "5"));
+        assertSameIds(filters("GTL_id", "57"), filters("GTI_id", "57"));
+        assertSameIds(filters("INL_id", "1,2,70"), filters("INI_id", "1,2,70"));
+        assertSameIds(filters("NINL_id", "1,2"), filters("NINI_id", "1,2"));
+
+        //balance为BigDecimal,过滤值为Double
+        List<Member> expected = memberDao.createQuery("from Member where balance >= 100 and balance < 305.5").list();
+        assertEquals(ids(expected), ids(filter(filters("GEN_balance", "100", "LTN_balance", "305.5"))));
+        expected = memberDao.createQuery("from Member where balance = 250").list();
+        assertEquals(ids(expected), ids(filter(filters("EQN_balance", "250.000"))));
+    }
+
+    @Test
+    public void testNullElementsInList() {
+        //in列表中的"null"是字符串,不匹配值为null的属性,not in也不会选出值为null的属性
+        assertSameResult(filters("INS_lastLoginIp", "null,10.0.0.1"));
+        assertSameResult(filters("NINS_lastLoginIp", "null,10.0.0.1"));
+        //数字类型的"null"转换为0
+        assertSameResult(filters("INL_id", "null,1"));
+        assertSameResult(filters("NINL_id", "null,1"));
+        assertSameResult(filters("INS_lastLoginIp_OR_name", "null,member02"));
+    }
+
+    private void assertSameResult(List<PropertyFilter> filters) {
+        List<Member> expected = memberDao.createCriteria(filters).list();
+
+        assertEquals(filters.toString(), ids(expected), ids(filter(filters)));
+    }
+
+    /**
+     * 内存中按filters过滤的结果与数据库按queryFilters查询的结果一致
+     */
+    private void assertSameIds(List<PropertyFilter> queryFilters, List<PropertyFilter> filters) {
+        List<Member> expected = memberDao.createCriteria(queryFilters).list();
+
+        assertEquals(filters.toString(), ids(expected), ids(filter(filters)));
+    }
+
+    private List<Member> filter(List<PropertyFilter> filters) {
+        return PropertyFilterPredicate.compile(Member.class, filters).filter(members);
+    }
+
+    /**
+     * 在当前事务中新增会员,测试结束后回滚
+     */
+    private void addMember(String name, String realName) {
+        Member member = new Member();
+        member.setName(name);
+        member.setPwd("pwd");
+        member.setRealPwd("pwd");
+        member.setSalt("salt");
+        member.setPhone("13900000");
+        member.setRealName(realName);
+        member.setIdentity("id" + name);
+        member.setBalance(BigDecimal.ZERO);
+        member.setRegisterTime(new Date());
+        memberDao.save(member);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Benchmark;
+import com.card.seller.domain.Benchmarks;
+import com.card.seller.domain.FieldType;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PropertyFilters#build(String, String)}的解析缓存与不使用缓存的解析结果一致,以及两者的开销对比
+ *
+ * @author vincent
+ */
+public class PropertyFiltersTest {
+
+    private static final String[] EXPRESSIONS = {"EQS_name", "LIKES_name_OR_phone", "NINL_id", "GED_registerTime",
+            "RLIKES_realName_OR_name_OR_phone", "NEB_enabled", "INI_type", "LLIKES_user.name"};
+
+    @Test
+    public void testSameAsUncachedParse() {
+        for (String expression : EXPRESSIONS) {
+            //第一次解析并缓存,第二次从缓存获取
+            for (int i = 0; i < 2; i++) {
+                PropertyFilter expected = parseWithoutCache(expression, "value");
+                PropertyFilter actual = PropertyFilters.build(expression, "value");
+
+                assertEquals(expression, expected.getRestrictionName(), actual.getRestrictionName());
+                assertEquals(expression, expected.getFieldType(), actual.getFieldType());
+                assertArrayEquals(expression, expected.getPropertyNames(), actual.getPropertyNames());
+                assertEquals(expression, expected.getMatchValue(), actual.getMatchValue());
+            }
+        }
+    }
+
+    @Test
+    public void testFiltersDoNotShareState() {
+        PropertyFilter first = PropertyFilters.build("LIKES_name_OR_phone", "a");
+        first.getPropertyNames()[0] = "changed";
+
+        PropertyFilter second = PropertyFilters.build("LIKES_name_OR_phone", "b");
+
+        assertEquals("name", second.getPropertyNames()[0]);
+        assertEquals("b", second.getMatchValue());
+    }
+
+    @Test
+    @Category(Benchmarks.class)
+    public void testBenchmark() {
+        final String[] values = {"admin", "13800000000", "1,2,3", "2014-01-01", "张三", "true", "1", "vincent"};
+
+        double uncached = Benchmark.measure("PropertyFilters parse per call", 20000, 200000, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EXPRESSIONS.length; i++) {
+                    parseWithoutCache(EXPRESSIONS[i], values[i]);
+                }
+            }
+        });
+        double cached = Benchmark.measure("PropertyFilters.build with descriptor cache", 20000, 200000, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EXPRESSIONS.length; i++) {
+                    PropertyFilters.build(EXPRESSIONS[i], values[i]);
+                }
+            }
+        });
+        Benchmark.compare("descriptor cache vs parse", uncached, cached);
+    }
+
+    /**
+     * 增加解析缓存之前PropertyFilters.build的实现,作为对比的基准
+     */
+    private static PropertyFilter parseWithoutCache(String expression, String matchValue) {
+        String restrictionsNameAndClassType = StringUtils.substringBefore(expression, "_");
+
+        String restrictionsName = StringUtils.substring(restrictionsNameAndClassType, 0, restrictionsNameAndClassType.length() - 1);
+        String classType = StringUtils.substring(restrictionsNameAndClassType, restrictionsNameAndClassType.length() - 1, restrictionsNameAndClassType.length());
+
+        FieldType fieldType = FieldType.valueOf(classType);
+
+        String[] propertyNames = null;
+        if (StringUtils.contains(expression, "_OR_")) {
+            String temp = StringUtils.substringAfter(expression, restrictionsNameAndClassType + "_");
+            propertyNames = StringUtils.splitByWholeSeparator(temp, "_OR_");
+        } else {
+            propertyNames = new String[1];
+            propertyNames[0] = StringUtils.substringAfterLast(expression, "_");
+        }
+
+        return new PropertyFilter(restrictionsName, fieldType, propertyNames, matchValue);
+    }
+}
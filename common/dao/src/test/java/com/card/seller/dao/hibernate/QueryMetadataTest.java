@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.dao.hibernate;
+
+import com.card.seller.domain.Member;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link QueryMetadata}的命名参数解析,以及可变参数按命名参数出现顺序绑定
+ *
+ * @author vincent
+ */
+public class QueryMetadataTest extends HibernateDaoTestSupport {
+
+    @Test
+    public void testNamedParametersInOrder() {
+        QueryMetadata metadata = memberDao.getQueryMetadata("from Member where phone = :phone and (name = :name or realName = :name) and id > :id");
+
+        assertEquals(Arrays.asList("phone", "name", "id"), metadata.getNamedParameters());
+        assertSame(metadata, memberDao.getQueryMetadata("from Member where phone = :phone and (name = :name or realName = :name) and id > :id"));
+    }
+
+    @Test
+    public void testPositionalParameters() {
+        assertEquals(Collections.emptyList(), memberDao.getQueryMetadata("from Member where name = ? and phone = ?").getNamedParameters());
+    }
+
+    @Test
+    public void testBindInOrderOfAppearance() {
+        List<Member> expected = memberDao.createQuery("from Member where name = ? or phone = ? or identity = ?", "member01", "13800005", "id_20").list();
+        List<Member> actual = memberDao.createQuery("from Member where name = :z or phone = :a or identity = :m", "member01", "13800005", "id_20").list();
+
+        assertEquals(11, expected.size());
+        assertEquals(ids(expected), ids(actual));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueCountMismatch() {
+        memberDao.createQuery("from Member where name = :name and phone = :phone", "member01");
+    }
+}
@@ -30,15 +30,20 @@ public class ConvertUtils extends org.apache.commons.beanutils.ConvertUtils {
         dc.setUseLocaleFormat(true);
         dc.setPatterns(patterns);
         register(dc, Date.class);
+        FieldTypeConverter.setDatePatterns(patterns);
     }
 
     /**
-     * 基于Apache BeanUtils转换字符串到相应类型.
+     * 转换字符串到相应类型.{@link FieldType}支持的类型使用{@link FieldTypeConverter},其他类型基于Apache BeanUtils转换.
      *
      * @param value  待转换的字符串.
      * @param toType 转换目标类型.
      */
     public static Object convertToObject(String value, Class<?> toType) {
+        FieldType fieldType = FieldTypeConverter.getFieldType(toType);
+        if (fieldType != null) {
+            return FieldTypeConverter.convert(value, fieldType);
+        }
         try {
             return convert(value, toType);
         } catch (Exception e) {
@@ -47,12 +52,16 @@ public class ConvertUtils extends org.apache.commons.beanutils.ConvertUtils {
     }
 
     /**
-     * 转换字符串数组到相应类型.
+     * 转换字符串数组到相应类型,{@link FieldType}支持的类型使用{@link FieldTypeConverter}一次转换全部元素.
      *
      * @param values  待转换的字符串.
      * @param toType 转换目标类型.
      */
     public static Object convertToObject(String[] values, Class<?> toType) {
+        FieldType fieldType = FieldTypeConverter.getFieldType(toType);
+        if (fieldType != null) {
+            return FieldTypeConverter.convert(values, fieldType);
+        }
         try {
             return convert(values, toType);
         } catch (Exception e) {
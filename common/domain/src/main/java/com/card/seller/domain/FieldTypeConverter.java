@@ -0,0 +1,272 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.domain;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按{@link FieldType}转换字符串的类型转换器,转换结果与Apache BeanUtils默认的转换器一致:
+ * <ul>
+ * <li>数字:去除首尾空格后解析,为空或无法解析时为0</li>
+ * <li>布尔:true/yes/y/on/1为true,false/no/n/off/0为false,其他为false,不去除首尾空格</li>
+ * <li>日期:按{@link #setDatePatterns(String...)}设置的格式依次严格解析,无法解析时抛出异常</li>
+ * </ul>
+ * 不使用BeanUtils的全局转换器注册表,日期格式每个线程缓存一份,转换过程中没有锁
+ *
+ * @author vincent
+ */
+public class FieldTypeConverter {
+
+    private static final Map<Class<?>, FieldType> FIELD_TYPES = new HashMap<Class<?>, FieldType>();
+
+    static {
+        for (FieldType fieldType : FieldType.values()) {
+            FIELD_TYPES.put(fieldType.getValue(), fieldType);
+        }
+    }
+
+    private static final Integer ZERO_INTEGER = 0;
+    private static final Long ZERO_LONG = 0L;
+    private static final Double ZERO_DOUBLE = 0D;
+
+    private static volatile DateParser dateParser = new DateParser(new String[]{"yyyy-MM-dd"});
+
+    private FieldTypeConverter() {
+
+    }
+
+    /**
+     * 设置日期格式,按顺序尝试解析
+     *
+     * @param patterns 日期格式
+     */
+    public static void setDatePatterns(String... patterns) {
+        if (patterns == null || patterns.length == 0) {
+            throw new IllegalArgumentException("日期格式不能为空");
+        }
+        dateParser = new DateParser(patterns.clone());
+    }
+
+    /**
+     * 获取类型对应的{@link FieldType}
+     *
+     * @param type 类型
+     * @return 不是{@link FieldType}支持的类型时返回null
+     */
+    public static FieldType getFieldType(Class<?> type) {
+        return FIELD_TYPES.get(type);
+    }
+
+    /**
+     * 转换字符串
+     *
+     * @param value     字符串
+     * @param fieldType 目标类型
+     * @return Object
+     */
+    public static Object convert(String value, FieldType fieldType) {
+        switch (fieldType) {
+            case S:
+                return value;
+            case I:
+                return toInteger(value);
+            case L:
+                return toLong(value);
+            case N:
+                return toDouble(value);
+            case D:
+                return toDate(value);
+            case B:
+                return toBoolean(value);
+            default:
+                throw new IllegalArgumentException("不支持的属性类型:" + fieldType);
+        }
+    }
+
+    /**
+     * 转换字符串数组,返回目标类型的数组,如Long[]
+     *
+     * @param values    字符串数组
+     * @param fieldType 目标类型
+     * @return Object[]
+     */
+    public static Object[] convert(String[] values, FieldType fieldType) {
+        switch (fieldType) {
+            case S:
+                return values.clone();
+            case I:
+                Integer[] integers = new Integer[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    integers[i] = toInteger(values[i]);
+                }
+                return integers;
+            case L:
+                Long[] longs = new Long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    longs[i] = toLong(values[i]);
+                }
+                return longs;
+            case N:
+                Double[] doubles = new Double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    doubles[i] = toDouble(values[i]);
+                }
+                return doubles;
+            case D:
+                DateParser parser = dateParser;
+                Date[] dates = new Date[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    dates[i] = parser.parse(values[i]);
+                }
+                return dates;
+            case B:
+                Boolean[] booleans = new Boolean[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    booleans[i] = toBoolean(values[i]);
+                }
+                return booleans;
+            default:
+                throw new IllegalArgumentException("不支持的属性类型:" + fieldType);
+        }
+    }
+
+    /**
+     * 转换为Integer,为空或无法解析时为0
+     *
+     * @param value 字符串
+     * @return Integer
+     */
+    public static Integer toInteger(String value) {
+        String text = StringUtils.trimToNull(value);
+        if (text == null) {
+            return ZERO_INTEGER;
+        }
+        try {
+            return Integer.valueOf(text);
+        } catch (NumberFormatException e) {
+            return ZERO_INTEGER;
+        }
+    }
+
+    /**
+     * 转换为Long,为空或无法解析时为0
+     *
+     * @param value 字符串
+     * @return Long
+     */
+    public static Long toLong(String value) {
+        String text = StringUtils.trimToNull(value);
+        if (text == null) {
+            return ZERO_LONG;
+        }
+        try {
+            return Long.valueOf(text);
+        } catch (NumberFormatException e) {
+            return ZERO_LONG;
+        }
+    }
+
+    /**
+     * 转换为Double,为空或无法解析时为0
+     *
+     * @param value 字符串
+     * @return Double
+     */
+    public static Double toDouble(String value) {
+        String text = StringUtils.trimToNull(value);
+        if (text == null) {
+            return ZERO_DOUBLE;
+        }
+        try {
+            return Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            return ZERO_DOUBLE;
+        }
+    }
+
+    /**
+     * 转换为Boolean,true/yes/y/on/1为true,其他为false.与BeanUtils一致,不去除首尾空格
+     *
+     * @param value 字符串
+     * @return Boolean
+     */
+    public static Boolean toBoolean(String value) {
+        if (value == null) {
+            return Boolean.FALSE;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("y")
+                || value.equalsIgnoreCase("on") || value.equals("1")) {
+            return Boolean.TRUE;
+        }
+        return Boolean.FALSE;
+    }
+
+    /**
+     * 按设置的日期格式转换为Date
+     *
+     * @param value 字符串
+     * @return Date
+     */
+    public static Date toDate(String value) {
+        return dateParser.parse(value);
+    }
+
+    /**
+     * 一组日期格式的解析器,每个线程使用自己的SimpleDateFormat
+     */
+    private static class DateParser {
+
+        private final String[] patterns;
+
+        private final ThreadLocal<SimpleDateFormat[]> formats = new ThreadLocal<SimpleDateFormat[]>() {
+            @Override
+            protected SimpleDateFormat[] initialValue() {
+                SimpleDateFormat[] result = new SimpleDateFormat[patterns.length];
+                for (int i = 0; i < patterns.length; i++) {
+                    result[i] = new SimpleDateFormat(patterns[i]);
+                    result[i].setLenient(false);
+                }
+                return result;
+            }
+        };
+
+        private DateParser(String[] patterns) {
+            this.patterns = patterns;
+        }
+
+        private Date parse(String value) {
+            String text = StringUtils.trimToNull(value);
+            if (text == null) {
+                throw new IllegalArgumentException("日期不能为空");
+            }
+            for (SimpleDateFormat format : formats.get()) {
+                ParsePosition position = new ParsePosition(0);
+                Date date = format.parse(text, position);
+                if (date != null && position.getErrorIndex() < 0 && position.getIndex() == text.length()) {
+                    return date;
+                }
+            }
+            throw new IllegalArgumentException("[" + value + "]不符合日期格式:" + Arrays.toString(patterns));
+        }
+    }
+}
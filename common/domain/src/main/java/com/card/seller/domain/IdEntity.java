@@ -7,6 +7,16 @@ import javax.persistence.MappedSuperclass;
 import java.io.Serializable;
 
 /**
+ * 主键基类,主键由子类声明的名为seq_gen的生成器生成.
+ * 子类使用pooled优化的序列生成器,每个实体使用自己的序列,一次从数据库取一段ID在JVM内分配:
+ * <pre>
+ * &#064;GenericGenerator(name = "seq_gen", strategy = IdEntity.SEQUENCE_STRATEGY, parameters = {
+ *         &#064;Parameter(name = "sequence_name", value = "seq_member"),
+ *         &#064;Parameter(name = "increment_size", value = IdEntity.ID_BLOCK_SIZE),
+ *         &#064;Parameter(name = "optimizer", value = "pooled")})
+ * </pre>
+ * increment_size必须与数据库序列的increment by一致
+ *
  * User: minj
  * Date: 14-11-10
  * Time: 下午10:10
@@ -14,6 +24,16 @@ import java.io.Serializable;
 @MappedSuperclass
 public class IdEntity implements Serializable {
 
+    /**
+     * 序列生成策略
+     */
+    public static final String SEQUENCE_STRATEGY = "org.hibernate.id.enhanced.SequenceStyleGenerator";
+
+    /**
+     * 默认每次从序列获取的ID数量,与dbmigration中序列的increment by一致
+     */
+    public static final String ID_BLOCK_SIZE = "50";
+
     protected Long id;
 
     @Id
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.domain;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明实体中建立了模糊查询索引的属性.属性对应的列需要同时建立text_pattern_ops的btree索引和pg_trgm的gin索引,
+ * RLIKE约束会被改写为可以使用btree索引的范围查询,LIKE和LLIKE约束由gin索引加速
+ * <p/>
+ * <pre>
+ * &#064;Entity
+ * &#064;LikeIndex({"name", "phone"})
+ * public class Member{
+ * 	private String name;
+ * 	private String phone;
+ * 	getter/setter.....
+ * }
+ * </pre>
+ *
+ * @author vincent
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LikeIndex {
+
+    /**
+     * 建立了模糊查询索引的属性名称
+     *
+     * @return String[]
+     */
+    public String[] value();
+}
@@ -1,5 +1,12 @@
 package com.card.seller.domain;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -11,7 +18,14 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "member")
-@SequenceGenerator(name = "seq_gen", sequenceName = "seq_users", allocationSize = 1)
+@GenericGenerator(name = "seq_gen", strategy = IdEntity.SEQUENCE_STRATEGY, parameters = {
+        @Parameter(name = "sequence_name", value = "seq_member"),
+        @Parameter(name = "increment_size", value = IdEntity.ID_BLOCK_SIZE),
+        @Parameter(name = "optimizer", value = "pooled")})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
+@LikeIndex({"name", "phone", "realName"})
 public class Member extends IdEntity {
 
     private String name;
@@ -38,6 +52,8 @@ public class Member extends IdEntity {
 
     private Date lastLoginTime;
 
+    @NaturalId
+    @Column(name = "name", nullable = false)
     public String getName() {
         return name;
     }
@@ -46,6 +62,7 @@ public class Member extends IdEntity {
         this.name = name;
     }
 
+    @Column(name = "pwd", nullable = false)
     public String getPwd() {
         return pwd;
     }
@@ -54,6 +71,7 @@ public class Member extends IdEntity {
         this.pwd = pwd;
     }
 
+    @Column(name = "phone", nullable = false)
     public String getPhone() {
         return phone;
     }
@@ -62,7 +80,7 @@ public class Member extends IdEntity {
         this.phone = phone;
     }
 
-    @Column(name = "real_name")
+    @Column(name = "real_name", nullable = false)
     public String getRealName() {
         return realName;
     }
@@ -71,6 +89,7 @@ public class Member extends IdEntity {
         this.realName = realName;
     }
 
+    @Column(name = "identity", nullable = false)
     public String getIdentity() {
         return identity;
     }
@@ -88,7 +107,7 @@ public class Member extends IdEntity {
         this.balance = balance;
     }
 
-    @Column(name = "real_pwd")
+    @Column(name = "real_pwd", nullable = false)
     public String getRealPwd() {
         return realPwd;
     }
@@ -97,6 +116,7 @@ public class Member extends IdEntity {
         this.realPwd = realPwd;
     }
 
+    @Column(name = "salt", nullable = false)
     public String getSalt() {
         return salt;
     }
@@ -115,7 +135,7 @@ public class Member extends IdEntity {
     }
 
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "register_time", length = 30)
+    @Column(name = "register_time", nullable = false, length = 30)
     public Date getRegisterTime() {
         return registerTime;
     }
@@ -1,8 +1,13 @@
 package com.card.seller.domain;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.util.Date;
 
@@ -13,7 +18,12 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "users")
-@SequenceGenerator(name = "seq_gen", sequenceName = "seq_users", allocationSize = 1)
+@GenericGenerator(name = "seq_gen", strategy = IdEntity.SEQUENCE_STRATEGY, parameters = {
+        @Parameter(name = "sequence_name", value = "seq_users"),
+        @Parameter(name = "increment_size", value = IdEntity.ID_BLOCK_SIZE),
+        @Parameter(name = "optimizer", value = "pooled")})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class User extends IdEntity {
 
     //登录名
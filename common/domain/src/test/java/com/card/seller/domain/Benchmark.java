@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.domain;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 测试中使用的简单微基准:先预热,再统计当前线程每次操作消耗的CPU时间,结果输出到标准输出.
+ * 只用于对比同一环境下两种实现的相对开销,不作为断言条件.使用它的测试方法需标记为{@link Benchmarks},默认构建不执行
+ *
+ * @author vincent
+ */
+public final class Benchmark {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private Benchmark() {
+    }
+
+    /**
+     * 测量每次操作的CPU时间
+     *
+     * @param name       名称
+     * @param warmup     预热次数
+     * @param iterations 统计次数
+     * @param operation  操作
+     * @return 每次操作的CPU时间(纳秒)
+     */
+    public static double measure(String name, int warmup, int iterations, Runnable operation) {
+        for (int i = 0; i < warmup; i++) {
+            operation.run();
+        }
+        boolean cpuTime = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+        long start = cpuTime ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long end = cpuTime ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+        double nanos = (double) (end - start) / iterations;
+        System.out.println(String.format("[benchmark] %-48s %12.1f ns/op (%s)", name, nanos, cpuTime ? "cpu" : "wall"));
+        return nanos;
+    }
+
+    /**
+     * 输出两种实现的对比结果
+     *
+     * @param name   名称
+     * @param before 原实现每次操作的时间
+     * @param after  新实现每次操作的时间
+     */
+    public static void compare(String name, double before, double after) {
+        System.out.println(String.format("[benchmark] %-48s %12.2fx", name + " speedup", before / after));
+    }
+}
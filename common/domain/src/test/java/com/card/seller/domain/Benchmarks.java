@@ -0,0 +1,27 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.domain;
+
+/**
+ * 微基准测试的JUnit分类.默认构建通过surefire的excludedGroups排除,使用-Pbenchmark执行:
+ * <pre>
+ * mvn -Pbenchmark test
+ * </pre>
+ *
+ * @author vincent
+ */
+public interface Benchmarks {
+}
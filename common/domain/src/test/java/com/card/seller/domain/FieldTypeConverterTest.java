@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.card.seller.domain;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link FieldTypeConverter}与Apache BeanUtils转换结果一致性的测试,以及两者的开销对比
+ *
+ * @author vincent
+ */
+public class FieldTypeConverterTest {
+
+    private static final String[] NUMBERS = {"0", "12", "-12", " 12 ", "", "   ", null, "abc", "1.5", "1e3",
+            "2147483648", "9223372036854775808", "+7", "0x10"};
+
+    private static final String[] BOOLEANS = {"true", "TRUE", "yes", "Y", "on", "1", "false", "no", "n", "off",
+            "0", "", " ", null, "abc", " true "};
+
+    private static final String[] DATES = {"2014-01-01", " 2014-12-31 ", "2014-02-29", "2014-13-01",
+            "2014-01-01 12:00", "20140101", "abc", "", null};
+
+    @BeforeClass
+    public static void registerDateConverter() {
+        ConvertUtils.registerDateConverter("yyyy-MM-dd");
+    }
+
+    @Test
+    public void testString() {
+        assertSameAsBeanUtils(new String[]{"abc", " abc ", ""}, FieldType.S);
+    }
+
+    @Test
+    public void testNumber() {
+        assertSameAsBeanUtils(NUMBERS, FieldType.I);
+        assertSameAsBeanUtils(NUMBERS, FieldType.L);
+        assertSameAsBeanUtils(NUMBERS, FieldType.N);
+    }
+
+    @Test
+    public void testBoolean() {
+        assertSameAsBeanUtils(BOOLEANS, FieldType.B);
+    }
+
+    @Test
+    public void testDate() {
+        assertSameAsBeanUtils(DATES, FieldType.D);
+    }
+
+    @Test
+    public void testArray() {
+        String[] values = {"1", " 2 ", "", "abc"};
+        for (FieldType fieldType : new FieldType[]{FieldType.S, FieldType.I, FieldType.L, FieldType.N, FieldType.B}) {
+            Object[] expected = (Object[]) org.apache.commons.beanutils.ConvertUtils.convert(values, fieldType.getValue());
+            Object[] actual = FieldTypeConverter.convert(values, fieldType);
+
+            assertEquals(fieldType.name(), expected.getClass(), actual.getClass());
+            assertArrayEquals(fieldType.name(), expected, actual);
+        }
+
+        String[] dates = {"2014-01-01", "2014-12-31"};
+        Object[] expected = (Object[]) org.apache.commons.beanutils.ConvertUtils.convert(dates, FieldType.D.getValue());
+        Object[] actual = FieldTypeConverter.convert(dates, FieldType.D);
+        assertEquals(expected.getClass(), actual.getClass());
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testConvertToObject() {
+        assertEquals(12L, ConvertUtils.convertToObject("12", Long.class));
+        assertArrayEquals(new Long[]{1L, 2L}, (Object[]) ConvertUtils.convertToObject(new String[]{"1", "2"}, Long.class));
+    }
+
+    @Test
+    @Category(Benchmarks.class)
+    public void testBenchmark() {
+        final String[] values = {"12", "abc", "2014-01-01", "true", "1.5", " 7 "};
+        final FieldType[] fieldTypes = {FieldType.L, FieldType.I, FieldType.D, FieldType.B, FieldType.N, FieldType.I};
+
+        double beanUtils = Benchmark.measure("BeanUtils ConvertUtils.convert", 20000, 200000, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < values.length; i++) {
+                    org.apache.commons.beanutils.ConvertUtils.convert(values[i], fieldTypes[i].getValue());
+                }
+            }
+        });
+        double converter = Benchmark.measure("FieldTypeConverter.convert", 20000, 200000, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < values.length; i++) {
+                    FieldTypeConverter.convert(values[i], fieldTypes[i]);
+                }
+            }
+        });
+        Benchmark.compare("FieldTypeConverter vs BeanUtils", beanUtils, converter);
+    }
+
+    /**
+     * 逐个比较转换结果,BeanUtils抛出异常时FieldTypeConverter也必须抛出异常
+     */
+    private static void assertSameAsBeanUtils(String[] values, FieldType fieldType) {
+        for (String value : values) {
+            String message = fieldType + ":[" + value + "]";
+            Object expected;
+            try {
+                expected = org.apache.commons.beanutils.ConvertUtils.convert(value, fieldType.getValue());
+            } catch (RuntimeException e) {
+                try {
+                    FieldTypeConverter.convert(value, fieldType);
+                    fail(message + " BeanUtils转换失败,FieldTypeConverter应该抛出异常");
+                } catch (IllegalArgumentException ignored) {
+                }
+                continue;
+            }
+            assertEquals(message, expected, FieldTypeConverter.convert(value, fieldType));
+        }
+    }
+}
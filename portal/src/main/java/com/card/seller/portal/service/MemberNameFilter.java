@@ -0,0 +1,353 @@
+package com.card.seller.portal.service;
+
+import com.card.seller.dao.MemberDao;
+import com.card.seller.dao.hibernate.CacheEventListener;
+import com.card.seller.dao.hibernate.CacheInvalidationBus;
+import com.card.seller.dao.hibernate.ScrollCallback;
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 会员登录名的布隆过滤器.启动后流式读取member.name构建,注册时加入新登录名,并定时重建.
+ * mightContain返回false时登录名一定未被本节点见过,可以不查数据库;返回true时需要再查数据库确认.
+ * <p/>
+ * 多节点部署时需要为MemberDao设置{@link CacheInvalidationBus}:其他节点注册会员后发布{@link MemberDao#MEMBER_INSERTED}事件,
+ * 本节点收到后直接加入事件中的登录名,不查数据库,最大延迟为总线的检查间隔.会员的其他修改不会通知过滤器.
+ * 总线断线重连时在{@link #setRebuildDelaySeconds(long)}后重建,延迟期间的多次重建请求只执行一次.
+ * 没有设置总线时其他节点注册的登录名要到下次重建后才会加入,期间可能把已存在的登录名判断为可用,
+ * 只适用于单节点部署.注册仍以数据库的唯一约束为准
+ */
+@Service
+public class MemberNameFilter implements InitializingBean, DisposableBean, CacheEventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberNameFilter.class);
+
+    public static final long DEFAULT_EXPECTED_INSERTIONS = 1000000;
+
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    public static final long DEFAULT_REBUILD_INTERVAL_MINUTES = 60;
+
+    public static final long DEFAULT_REBUILD_DELAY_SECONDS = 10;
+
+    @Autowired
+    private MemberDao memberDao;
+
+    private long expectedInsertions = DEFAULT_EXPECTED_INSERTIONS;
+    private double falsePositiveProbability = DEFAULT_FALSE_POSITIVE_PROBABILITY;
+    private long rebuildIntervalMinutes = DEFAULT_REBUILD_INTERVAL_MINUTES;
+    private long rebuildDelaySeconds = DEFAULT_REBUILD_DELAY_SECONDS;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    //为空时表示还未构建完成,此时所有登录名都需要查数据库
+    private BloomFilter<CharSequence> filter;
+    private long filterCapacity;
+    //重建期间新加入的登录名,重建完成后补充到新的过滤器中
+    private List<String> addedDuringRebuild;
+
+    private final Object rebuildMonitor = new Object();
+    private ScheduledExecutorService scheduler;
+    //已有等待执行的重建请求
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    private final AtomicLong elementCount = new AtomicLong();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong negativeCount = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+    private volatile long lastRebuildTime;
+
+    public void setExpectedInsertions(long expectedInsertions) {
+        Assert.isTrue(expectedInsertions > 0, "预计登录名个数必须大于0");
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public void setFalsePositiveProbability(double falsePositiveProbability) {
+        Assert.isTrue(falsePositiveProbability > 0 && falsePositiveProbability < 1, "误判率必须在0和1之间");
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    public void setRebuildIntervalMinutes(long rebuildIntervalMinutes) {
+        this.rebuildIntervalMinutes = rebuildIntervalMinutes;
+    }
+
+    /**
+     * 设置收到重建请求后延迟执行的秒数,延迟期间的多次请求合并为一次重建
+     *
+     * @param rebuildDelaySeconds 延迟秒数
+     */
+    public void setRebuildDelaySeconds(long rebuildDelaySeconds) {
+        Assert.isTrue(rebuildDelaySeconds >= 0, "重建延迟不能小于0");
+        this.rebuildDelaySeconds = rebuildDelaySeconds;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "member-name-filter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        };
+        //构建在后台执行,不阻塞启动
+        if (rebuildIntervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(task, 0, rebuildIntervalMinutes, TimeUnit.MINUTES);
+        } else {
+            scheduler.execute(task);
+        }
+
+        CacheInvalidationBus bus = memberDao.getCacheInvalidationBus();
+        if (bus != null) {
+            bus.addEventListener(this);
+        } else {
+            LOGGER.warn("member dao has no cache invalidation bus, names registered on other nodes are added on next rebuild only");
+        }
+    }
+
+    /**
+     * 其他节点注册了会员,加入事件中的登录名
+     */
+    @Override
+    public void onEvent(String event, List<String> values) {
+        if (!MemberDao.MEMBER_INSERTED.equals(event)) {
+            return;
+        }
+        for (String name : values) {
+            put(name);
+        }
+    }
+
+    /**
+     * 总线重连期间可能丢失了新增会员事件,请求重建过滤器
+     */
+    @Override
+    public void onReconnect() {
+        requestRebuild();
+    }
+
+    /**
+     * 请求在{@link #setRebuildDelaySeconds(long)}后重建过滤器,已有等待执行的请求时忽略
+     */
+    public void requestRebuild() {
+        if (!rebuildRequested.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                rebuildRequested.set(false);
+                rebuild();
+            }
+        }, rebuildDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 登录名是否可能已存在
+     *
+     * @param name 登录名
+     * @return false时一定不存在
+     */
+    public boolean mightContain(String name) {
+        queryCount.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            if (filter == null || filter.mightContain(name)) {
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        negativeCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 加入登录名
+     *
+     * @param name 登录名
+     */
+    public void put(String name) {
+        lock.writeLock().lock();
+        try {
+            if (filter != null && filter.put(name)) {
+                elementCount.incrementAndGet();
+            }
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 记录一次误判,即mightContain返回true但数据库中不存在
+     */
+    public void recordFalsePositive() {
+        falsePositiveCount.incrementAndGet();
+    }
+
+    /**
+     * 流式读取全部登录名重建过滤器,容量取配置值与上次登录名个数两倍中的较大值
+     */
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            lock.writeLock().lock();
+            try {
+                addedDuringRebuild = new ArrayList<String>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long capacity = Math.max(expectedInsertions, elementCount.get() * 2);
+            final BloomFilter<CharSequence> rebuilt = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), (int) Math.min(capacity, Integer.MAX_VALUE), falsePositiveProbability);
+            final AtomicLong count = new AtomicLong();
+            long start = System.currentTimeMillis();
+            try {
+                memberDao.scrollByQueryStateless("select m.name from Member m", null, new ScrollCallback<String>() {
+                    @Override
+                    public void doWithRow(String name) {
+                        if (name != null) {
+                            rebuilt.put(name);
+                            count.incrementAndGet();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                LOGGER.error("rebuild member name filter error", e);
+                lock.writeLock().lock();
+                try {
+                    addedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (String name : addedDuringRebuild) {
+                    if (rebuilt.put(name)) {
+                        count.incrementAndGet();
+                    }
+                }
+                addedDuringRebuild = null;
+                filter = rebuilt;
+                filterCapacity = capacity;
+                elementCount.set(count.get());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            lastRebuildTime = System.currentTimeMillis();
+            LOGGER.info("member name filter rebuilt, {} names in {} ms", count.get(), lastRebuildTime - start);
+        }
+    }
+
+    /**
+     * 过滤器是否已构建完成
+     */
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return filter != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取已加入的登录名个数
+     */
+    public long getElementCount() {
+        return elementCount.get();
+    }
+
+    /**
+     * 获取按当前元素个数估算的误判率
+     */
+    public double getExpectedFpp() {
+        lock.readLock().lock();
+        try {
+            return filter == null ? 1 : filter.expectedFpp();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取按容量与配置误判率估算的位数组大小(字节)
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            if (filter == null) {
+                return 0;
+            }
+            long bits = (long) (-filterCapacity * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+            return bits / 8;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取查询次数
+     */
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * 获取不需要查数据库(一定不存在)的次数
+     */
+    public long getNegativeCount() {
+        return negativeCount.get();
+    }
+
+    /**
+     * 获取误判次数
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.get();
+    }
+
+    /**
+     * 获取上次重建完成的时间
+     */
+    public long getLastRebuildTime() {
+        return lastRebuildTime;
+    }
+}
@@ -26,12 +26,21 @@ public class MemberService {
     @Autowired
     private GenerateService generateService;
 
-    @Transactional
+    @Autowired
+    private MemberNameFilter memberNameFilter;
+
+    @Transactional(readOnly = true)
     public void checkMemberByAccount(String account) throws CheckMemberException {
-        Member member = memberDao.getMemberByAccount(account);
-        if (member != null) {
+        //布隆过滤器判断一定不存在时不查数据库
+        if (!memberNameFilter.mightContain(account)) {
+            return;
+        }
+        if (memberDao.existsAccount(account)) {
             throw new CheckMemberException("the user has exists", MemberConstants.USER_HAS_EXIST);
         }
+        if (memberNameFilter.isReady()) {
+            memberNameFilter.recordFalsePositive();
+        }
     }
 
     public Member saveMember(String name, String pwd, String phone, String realName, String identity, String ip) {
@@ -47,7 +56,9 @@ public class MemberService {
         member.setPwd(generateService.generatEncryptPassWord(pwd, salt));
         member.setRegisterIp(ip);
         member.setRegisterTime(new Date());
-        memberDao.save(member);
+        //发布新增会员事件,其他节点的登录名过滤器据此加入新登录名
+        memberDao.saveAndPublish(member);
+        memberNameFilter.put(name);
         return member;
     }
 }